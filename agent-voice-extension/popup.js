@@ -48,41 +48,53 @@ function updateStatus(state) {
 
 /**
  * Add new transcript to UI
+ * Interim hypotheses update one live item in place until the final text arrives
  */
-function addTranscript(text) {
+function addTranscript(data) {
   // Remove "no transcript" placeholder
   const placeholder = transcriptCard.querySelector('.no-transcript');
   if (placeholder) placeholder.remove();
 
-  // Parse text if it's a JSON string (VoiceStreamAI returns JSON)
-  let displayText = text;
-  try {
-    if (typeof text === 'string' && (text.startsWith('{') || text.startsWith('['))) {
-      const parsed = JSON.parse(text);
-      // If it has a 'text' field, use that. Otherwise use the whole object.
-      if (parsed.text) {
-        displayText = parsed.text;
+  // Backend sends { text, final }; older backends send the raw VoiceStreamAI JSON string
+  let displayText = data;
+  let isFinal = true;
+  if (data && typeof data === 'object') {
+    displayText = data.text || '';
+    isFinal = data.final !== false;
+  } else {
+    try {
+      if (typeof data === 'string' && (data.startsWith('{') || data.startsWith('['))) {
+        const parsed = JSON.parse(data);
+        // If it has a 'text' field, use that. Otherwise use the whole object.
+        if (parsed.text) {
+          displayText = parsed.text;
+        }
       }
+    } catch (e) {
+      // Not JSON, use original text
     }
-  } catch (e) {
-    // Not JSON, use original text
   }
 
-  // Create transcript item
-  const item = document.createElement('div');
-  item.className = 'transcript-item';
-  
-  const time = document.createElement('div');
-  time.className = 'transcript-time';
-  time.textContent = new Date().toLocaleTimeString();
-  
-  const content = document.createElement('div');
-  content.className = 'transcript-text';
-  content.textContent = displayText;
-  
-  item.appendChild(time);
-  item.appendChild(content);
-  transcriptCard.insertBefore(item, transcriptCard.firstChild);
+  // Reuse the live item of the utterance in progress, if any
+  let item = transcriptCard.querySelector('.transcript-item.interim');
+  if (!item) {
+    // Create transcript item
+    item = document.createElement('div');
+    item.className = 'transcript-item';
+
+    const time = document.createElement('div');
+    time.className = 'transcript-time';
+    time.textContent = new Date().toLocaleTimeString();
+
+    const content = document.createElement('div');
+    content.className = 'transcript-text';
+
+    item.appendChild(time);
+    item.appendChild(content);
+    transcriptCard.insertBefore(item, transcriptCard.firstChild);
+  }
+  item.querySelector('.transcript-text').textContent = displayText;
+  item.classList.toggle('interim', !isFinal);
 
   // Keep only last 10 transcripts
   while (transcriptCard.children.length > 10) {
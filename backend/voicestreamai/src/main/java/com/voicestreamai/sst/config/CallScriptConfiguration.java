@@ -0,0 +1,34 @@
+package com.voicestreamai.sst.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.voicestreamai.sst.model.CallScriptConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+
+/**
+ * Loads callScript.json once and shares it between the local scorer and Gemini
+ */
+@Configuration
+public class CallScriptConfiguration {
+
+    @Bean
+    public CallScriptConfig callScriptConfig() {
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+
+            ClassPathResource resource = new ClassPathResource("callScript.json");
+            CallScriptConfig config = mapper.readValue(resource.getInputStream(), CallScriptConfig.class);
+
+            System.out.println("✅ Loaded callScript.json successfully");
+            return config;
+        } catch (IOException e) {
+            System.err.println("❌ Failed to load callScript.json: " + e.getMessage());
+            return new CallScriptConfig();
+        }
+    }
+}
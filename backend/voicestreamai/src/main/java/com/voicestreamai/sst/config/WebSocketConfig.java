@@ -1,14 +1,42 @@
 package com.voicestreamai.sst.config;
 
-import org.springframework.context.annotation.Bean;
+import com.voicestreamai.sst.ws.AgentAudioEndpoint;
+import com.voicestreamai.sst.ws.SupervisorEndpoint;
+import com.voicestreamai.sst.ws.SupervisorHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.socket.server.standard.ServerEndpointExporter;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
 @Configuration
-public class WebSocketConfig {
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
 
-    @Bean
-    public ServerEndpointExporter serverEndpointExporter() {
-        return new ServerEndpointExporter();
+    @Autowired
+    private AgentAudioEndpoint agentAudioEndpoint;
+
+    @Autowired
+    private SupervisorEndpoint supervisorEndpoint;
+
+    @Autowired
+    private SupervisorHandshakeInterceptor supervisorHandshakeInterceptor;
+
+    // The Chrome extension connects from a chrome-extension:// origin
+    @Value("${voicestream.ws.allowed-origins:*}")
+    private String[] allowedOrigins;
+
+    // Dashboards are web pages; never open the live transcript feed to any origin
+    @Value("${voicestream.supervisor.allowed-origins:http://localhost:*}")
+    private String[] supervisorAllowedOrigins;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(agentAudioEndpoint, "/ws/agent-audio")
+                .setAllowedOriginPatterns(allowedOrigins);
+        registry.addHandler(supervisorEndpoint, "/ws/supervisor")
+                .addInterceptors(supervisorHandshakeInterceptor)
+                .setAllowedOriginPatterns(supervisorAllowedOrigins);
     }
 }
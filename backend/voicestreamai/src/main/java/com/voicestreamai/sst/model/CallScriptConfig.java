@@ -1,6 +1,7 @@
 package com.voicestreamai.sst.model;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * POJO representing the callScript.json configuration
@@ -9,7 +10,10 @@ public class CallScriptConfig {
 
     private List<String> openingLines;
     private List<String> mandatorySteps;
+    private Map<String, List<String>> mandatoryStepCues;
     private List<String> closingLines;
+    private List<String> empathyPhrases;
+    private String empathyStep;
     private Constraints constraints;
     private SampleCriticalPhrases sampleCriticalPhrases;
 
@@ -42,11 +46,11 @@ public class CallScriptConfig {
                 this.socialMediaThreats = value;
             }
 
-            public List<String> getRundeLanguage() {
+            public List<String> getRudeLanguage() {
                 return rudeLanguage;
             }
 
-            public void setRundeLanguage(List<String> value) {
+            public void setRudeLanguage(List<String> value) {
                 this.rudeLanguage = value;
             }
         }
@@ -141,6 +145,14 @@ public class CallScriptConfig {
         this.mandatorySteps = value;
     }
 
+    public Map<String, List<String>> getMandatoryStepCues() {
+        return mandatoryStepCues;
+    }
+
+    public void setMandatoryStepCues(Map<String, List<String>> value) {
+        this.mandatoryStepCues = value;
+    }
+
     public List<String> getClosingLines() {
         return closingLines;
     }
@@ -149,6 +161,23 @@ public class CallScriptConfig {
         this.closingLines = value;
     }
 
+    public List<String> getEmpathyPhrases() {
+        return empathyPhrases;
+    }
+
+    public void setEmpathyPhrases(List<String> value) {
+        this.empathyPhrases = value;
+    }
+
+    /** Mandatory step completed by reaching the minimum empathy count */
+    public String getEmpathyStep() {
+        return empathyStep;
+    }
+
+    public void setEmpathyStep(String value) {
+        this.empathyStep = value;
+    }
+
     public Constraints getConstraints() {
         return constraints;
     }
@@ -0,0 +1,475 @@
+package com.voicestreamai.sst.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precompiled, ASR-error-tolerant index over script phrases.
+ * Each phrase is reduced to a phonetic consonant key (vowels dropped, similar
+ * consonants grouped, word breaks ignored), so "welcome to zepto" and
+ * "welcome to zip toe" share the same key. Exact occurrences are looked up by
+ * first word; fuzzy candidates are picked through a trigram filter and at most
+ * {@code maxCandidates} of them are verified with approximate substring
+ * matching, so the expensive part of a query does not grow with the number of
+ * phrases. A phonetic hit is then re-checked against the spelling of the heard
+ * words, aligned word by word: every phrase word must be heard (possibly split
+ * in two), so dropping one rejects the match. The reported confidence is the
+ * mean of the phonetic and letter-level similarity.
+ * Phrases whose key is too short to match fuzzily are matched exactly.
+ *
+ * @param <T> caller-defined tag attached to each phrase
+ */
+public final class FuzzyPhraseIndex<T> {
+
+    private static final int Q = 3;
+    private static final int MIN_FUZZY_KEY_LENGTH = 6;
+    // Per phrase word, below this the heard word is something else
+    private static final double MIN_WORD_SIMILARITY = 0.5;
+
+    private final Map<String, List<Entry<T>>> byFirstWord = new HashMap<>();
+    private final Map<String, List<Entry<T>>> postings = new HashMap<>();
+    private final double minConfidence;
+    private final int maxCandidates;
+    private int maxPhraseWords;
+
+    public FuzzyPhraseIndex(double minConfidence, int maxCandidates) {
+        this.minConfidence = minConfidence;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /** Add a phrase; expects text already normalized to lowercase words */
+    public void add(String normalizedPhrase, T tag) {
+        if (normalizedPhrase.isEmpty()) {
+            return;
+        }
+        String[] words = normalizedPhrase.split(" ");
+        Entry<T> entry = new Entry<>(normalizedPhrase, words, tag, encode(words).key);
+        byFirstWord.computeIfAbsent(words[0], w -> new ArrayList<>()).add(entry);
+        maxPhraseWords = Math.max(maxPhraseWords, words.length);
+
+        if (entry.fuzzy()) {
+            entry.maxEdits = (int) Math.floor(entry.key.length() * (1.0 - minConfidence));
+            Set<String> grams = grams(entry.key);
+            entry.distinctGrams = grams.size();
+            for (String gram : grams) {
+                postings.computeIfAbsent(gram, g -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    public int getMaxPhraseWords() {
+        return maxPhraseWords;
+    }
+
+    /**
+     * Find every occurrence of every indexed phrase in the window of words.
+     * Exact matches report confidence 1.0; fuzzy matches report
+     * 1 - editDistance / keyLength.
+     */
+    public List<Match<T>> search(List<String> windowWords) {
+        List<Match<T>> matches = new ArrayList<>();
+        if (windowWords.isEmpty()) {
+            return matches;
+        }
+
+        // Exact pass: cheap and catches short phrases that are never fuzzy-matched
+        Map<Entry<T>, List<Match<T>>> exactHits = new HashMap<>();
+        for (int start = 0; start < windowWords.size(); start++) {
+            List<Entry<T>> starting = byFirstWord.get(windowWords.get(start));
+            if (starting == null) {
+                continue;
+            }
+            for (Entry<T> entry : starting) {
+                if (matchesAt(windowWords, start, entry)) {
+                    Match<T> match = new Match<>(entry.tag, entry.phrase, 1.0, start, start + entry.words.length - 1);
+                    matches.add(match);
+                    exactHits.computeIfAbsent(entry, e -> new ArrayList<>()).add(match);
+                }
+            }
+        }
+
+        EncodedWindow window = encode(windowWords.toArray(new String[0]));
+        if (window.key.length() < MIN_FUZZY_KEY_LENGTH - 1) {
+            return matches;
+        }
+
+        // Trigram count filter: k edits destroy at most k*Q grams of the phrase
+        Map<Entry<T>, Integer> shared = new HashMap<>();
+        for (String gram : grams(window.key)) {
+            List<Entry<T>> posting = postings.get(gram);
+            if (posting != null) {
+                for (Entry<T> entry : posting) {
+                    shared.merge(entry, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<Entry<T>, Integer>> candidates = new ArrayList<>();
+        for (Map.Entry<Entry<T>, Integer> candidate : shared.entrySet()) {
+            Entry<T> entry = candidate.getKey();
+            if (candidate.getValue() >= entry.distinctGrams - entry.maxEdits * Q) {
+                candidates.add(candidate);
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+        int verified = 0;
+        for (Map.Entry<Entry<T>, Integer> candidate : candidates) {
+            if (verified++ >= maxCandidates) {
+                break;
+            }
+            Entry<T> entry = candidate.getKey();
+            List<Match<T>> exact = exactHits.getOrDefault(entry, List.of());
+            for (Match<T> match : findFuzzy(windowWords, window, entry)) {
+                // The exact pass already reported this occurrence
+                if (exact.stream().noneMatch(e -> e.startWord <= match.endWord && match.startWord <= e.endWord)) {
+                    matches.add(match);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matchesAt(List<String> words, int start, Entry<?> entry) {
+        int n = entry.words.length;
+        if (start + n > words.size()) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!words.get(start + i).equals(entry.words[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sellers' approximate substring search over the window key. Each run of
+     * end positions within the edit budget is one occurrence; the best end in
+     * the run is reported if it lies on word boundaries and is confirmed by
+     * the letters of the matched words.
+     */
+    private List<Match<T>> findFuzzy(List<String> windowWords, EncodedWindow window, Entry<T> entry) {
+        List<Match<T>> matches = new ArrayList<>();
+        String pattern = entry.key;
+        String text = window.key;
+        int m = pattern.length();
+        int n = text.length();
+
+        int[] prevCost = new int[n + 1];
+        int[] prevStart = new int[n + 1];
+        int[] cost = new int[n + 1];
+        int[] start = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            prevStart[j] = j;
+        }
+
+        for (int i = 1; i <= m; i++) {
+            cost[0] = i;
+            start[0] = 0;
+            char p = pattern.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int best = prevCost[j - 1] + (p == text.charAt(j - 1) ? 0 : 1);
+                int bestStart = prevStart[j - 1];
+                if (prevCost[j] + 1 < best) {
+                    best = prevCost[j] + 1;
+                    bestStart = prevStart[j];
+                }
+                if (cost[j - 1] + 1 < best) {
+                    best = cost[j - 1] + 1;
+                    bestStart = start[j - 1];
+                }
+                cost[j] = best;
+                start[j] = bestStart;
+            }
+            int[] swapCost = prevCost;
+            prevCost = cost;
+            cost = swapCost;
+            int[] swapStart = prevStart;
+            prevStart = start;
+            start = swapStart;
+        }
+
+        int runBest = -1;
+        for (int j = 1; j <= n + 1; j++) {
+            boolean within = j <= n && prevCost[j] <= entry.maxEdits;
+            if (within) {
+                if (runBest < 0 || prevCost[j] < prevCost[runBest]) {
+                    runBest = j;
+                }
+            } else if (runBest >= 0) {
+                int from = prevStart[runBest];
+                int to = runBest - 1;
+                if (from <= to && window.nearWordStart(from) && window.nearWordEnd(to)) {
+                    Match<T> match = verifySpelling(windowWords, entry, window.wordAt[from], window.wordAt[to],
+                            1.0 - prevCost[runBest] / (double) m);
+                    if (match != null) {
+                        matches.add(match);
+                    }
+                }
+                runBest = -1;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Confirm a phonetic hit on the heard words. Words with no consonant
+     * (like "i") leave no trace in the key, so the span may be widened by one
+     * word on either side to find them.
+     */
+    private Match<T> verifySpelling(List<String> windowWords, Entry<T> entry, int startWord, int endWord,
+            double phonetic) {
+        Match<T> best = null;
+        for (int from = Math.max(0, startWord - 1); from <= startWord; from++) {
+            for (int to = endWord; to <= Math.min(windowWords.size() - 1, endWord + 1); to++) {
+                double spelling = wordAlignedSimilarity(entry.words, windowWords.subList(from, to + 1));
+                double confidence = (phonetic + spelling) / 2;
+                if (confidence >= minConfidence && (best == null || confidence > best.confidence)) {
+                    best = new Match<>(entry.tag, entry.phrase, confidence, from, to);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Letter-level similarity of a phrase and the heard words, where each
+     * phrase word must align with one heard word or two (an ASR split) of
+     * similar spelling. Extra heard words cost their length. Returns 0 if a
+     * phrase word has no counterpart.
+     */
+    static double wordAlignedSimilarity(String[] phrase, List<String> heard) {
+        int a = phrase.length;
+        int b = heard.size();
+        int unreachable = Integer.MAX_VALUE;
+        int[][] cost = new int[a + 1][b + 1];
+        for (int[] row : cost) {
+            Arrays.fill(row, unreachable);
+        }
+        cost[0][0] = 0;
+
+        for (int i = 0; i <= a; i++) {
+            for (int j = 0; j <= b; j++) {
+                if (cost[i][j] == unreachable) {
+                    continue;
+                }
+                if (j < b) {
+                    // Filler word heard between phrase words
+                    cost[i][j + 1] = Math.min(cost[i][j + 1], cost[i][j] + heard.get(j).length());
+                }
+                if (i == a) {
+                    continue;
+                }
+                String heardWords = "";
+                for (int y = 1; y <= 2 && j + y <= b; y++) {
+                    heardWords += heard.get(j + y - 1);
+                    int distance = distance(phrase[i], heardWords);
+                    int longest = Math.max(phrase[i].length(), heardWords.length());
+                    if (1.0 - distance / (double) longest >= MIN_WORD_SIMILARITY) {
+                        cost[i + 1][j + y] = Math.min(cost[i + 1][j + y], cost[i][j] + distance);
+                    }
+                }
+            }
+        }
+        if (cost[a][b] == unreachable) {
+            return 0.0;
+        }
+
+        int phraseLetters = 0;
+        for (String word : phrase) {
+            phraseLetters += word.length();
+        }
+        int heardLetters = 0;
+        for (String word : heard) {
+            heardLetters += word.length();
+        }
+        return Math.max(0.0, 1.0 - cost[a][b] / (double) Math.max(phraseLetters, heardLetters));
+    }
+
+    /** Levenshtein distance */
+    private static int distance(String a, String b) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                cur[j] = Math.min(substitution, Math.min(prev[j], cur[j - 1]) + 1);
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return prev[b.length()];
+    }
+
+    private static Set<String> grams(String key) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + Q <= key.length(); i++) {
+            grams.add(key.substring(i, i + Q));
+        }
+        return grams;
+    }
+
+    /**
+     * Phonetic consonant key: Soundex-style consonant groups, vowels and
+     * h/w dropped, digits kept as their own symbols, and repeated codes
+     * collapsed unless a vowel separates them. Word breaks are ignored so
+     * ASR word splits do not change the key.
+     */
+    static EncodedWindow encode(String[] words) {
+        StringBuilder key = new StringBuilder();
+        List<Integer> owners = new ArrayList<>();
+        List<Boolean> starts = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        char last = 0;
+
+        for (int w = 0; w < words.length; w++) {
+            boolean first = true;
+            int before = key.length();
+            for (int i = 0; i < words[w].length(); i++) {
+                char c = words[w].charAt(i);
+                char code = code(c);
+                if (code == 0) {
+                    if ("aeiouy".indexOf(c) >= 0) {
+                        // Vowels separate repeated codes, as in Soundex
+                        last = 0;
+                    }
+                    continue;
+                }
+                if (code == last) {
+                    continue;
+                }
+                key.append(code);
+                owners.add(w);
+                starts.add(first);
+                ends.add(false);
+                first = false;
+                last = code;
+            }
+            if (key.length() > before) {
+                ends.set(ends.size() - 1, true);
+            }
+        }
+
+        EncodedWindow window = new EncodedWindow(key.toString(), owners.size());
+        for (int i = 0; i < owners.size(); i++) {
+            window.wordAt[i] = owners.get(i);
+            window.wordStart[i] = starts.get(i);
+            window.wordEnd[i] = ends.get(i);
+        }
+        return window;
+    }
+
+    private static char code(char c) {
+        switch (c) {
+            case 'b', 'f', 'p', 'v':
+                return '1';
+            case 'c', 'g', 'j', 'k', 'q', 's', 'x', 'z':
+                return '2';
+            case 'd', 't':
+                return '3';
+            case 'l':
+                return '4';
+            case 'm', 'n':
+                return '5';
+            case 'r':
+                return '6';
+            default:
+                return Character.isDigit(c) ? (char) ('A' + (c - '0')) : 0;
+        }
+    }
+
+    /** Encoded query window with per-position word ownership */
+    static final class EncodedWindow {
+        final String key;
+        final int[] wordAt;
+        final boolean[] wordStart;
+        final boolean[] wordEnd;
+
+        EncodedWindow(String key, int length) {
+            this.key = key;
+            this.wordAt = new int[length];
+            this.wordStart = new boolean[length];
+            this.wordEnd = new boolean[length];
+        }
+
+        // One position of slack: a boundary code may have been collapsed into its neighbour
+        boolean nearWordStart(int pos) {
+            return flag(wordStart, pos) || flag(wordStart, pos - 1) || flag(wordStart, pos + 1);
+        }
+
+        boolean nearWordEnd(int pos) {
+            return flag(wordEnd, pos) || flag(wordEnd, pos - 1) || flag(wordEnd, pos + 1);
+        }
+
+        private static boolean flag(boolean[] flags, int pos) {
+            return pos >= 0 && pos < flags.length && flags[pos];
+        }
+    }
+
+    private static final class Entry<T> {
+        final String phrase;
+        final String[] words;
+        final T tag;
+        final String key;
+        int maxEdits;
+        int distinctGrams;
+
+        Entry(String phrase, String[] words, T tag, String key) {
+            this.phrase = phrase;
+            this.words = words;
+            this.tag = tag;
+            this.key = key;
+        }
+
+        boolean fuzzy() {
+            return key.length() >= MIN_FUZZY_KEY_LENGTH;
+        }
+    }
+
+    /** One occurrence of an indexed phrase, located by window word indexes */
+    public static final class Match<T> {
+        private final T tag;
+        private final String phrase;
+        private final double confidence;
+        private final int startWord;
+        private final int endWord;
+
+        Match(T tag, String phrase, double confidence, int startWord, int endWord) {
+            this.tag = tag;
+            this.phrase = phrase;
+            this.confidence = confidence;
+            this.startWord = startWord;
+            this.endWord = endWord;
+        }
+
+        public T getTag() {
+            return tag;
+        }
+
+        public String getPhrase() {
+            return phrase;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        public int getStartWord() {
+            return startWord;
+        }
+
+        public int getEndWord() {
+            return endWord;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.voicestreamai.sst.service;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker and hedging around a remote call (Gemini).
+ * Failures and calls slower than {@code slowCallMillis} are tracked over a
+ * sliding window; once the failure rate crosses the threshold the circuit
+ * opens and calls are rejected immediately for {@code openMillis}, after which
+ * a single probe decides whether to close it again.
+ * While closed, an attempt still running after the recent p95 latency gets a
+ * hedged second attempt (if {@code hedgePermit} allows it), and the whole call
+ * is bounded by {@code timeoutMillis}.
+ */
+class GeminiCallGuard {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /** Thrown instead of calling when the circuit is open */
+    static class CallNotPermittedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CallNotPermittedException() {
+            super("Circuit open");
+        }
+    }
+
+    private static final int LATENCY_SAMPLES = 100;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final long timeoutMillis;
+    private final long minHedgeDelayMillis;
+    private final boolean hedgingEnabled;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Predicate<Throwable> countsAsFailure;
+
+    // Guarded by this
+    private final boolean[] outcomes;
+    private int outcomeCount;
+    private int outcomeIndex;
+    private int failureCount;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    GeminiCallGuard(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallMillis,
+            long openMillis, long timeoutMillis, boolean hedgingEnabled, long minHedgeDelayMillis,
+            Executor executor, LongSupplier clock, Predicate<Throwable> countsAsFailure) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        this.executor = executor;
+        this.clock = clock;
+        this.countsAsFailure = countsAsFailure;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Run the attempt under the breaker, hedging it if it runs past the
+     * recent p95 latency. Exceptions thrown by the attempt are rethrown as is.
+     *
+     * @throws CallNotPermittedException if the circuit is open
+     */
+    String call(Callable<String> attempt, BooleanSupplier hedgePermit) throws Exception {
+        if (!tryAcquire()) {
+            throw new CallNotPermittedException();
+        }
+
+        long start = System.nanoTime();
+        try {
+            String result = hedged(attempt, hedgePermit, start);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            onResult(latency > slowCallMillis, latency);
+            return result;
+        } catch (Exception e) {
+            if (countsAsFailure.test(e)) {
+                onResult(true, -1);
+            } else {
+                // Says nothing about the provider's health: record no outcome
+                releaseProbe();
+            }
+            throw e;
+        }
+    }
+
+    /** True if a call would currently be let through (without reserving a probe) */
+    synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> clock.getAsLong() - openedAt >= openMillis;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /** Recent p95 latency of successful calls, or -1 until enough samples exist */
+    synchronized long p95LatencyMillis() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * latencyCount) - 1];
+    }
+
+    private String hedged(Callable<String> attempt, BooleanSupplier hedgePermit, long startNanos)
+            throws Exception {
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        launch(attempt, winner, running);
+
+        try {
+            long p95 = p95LatencyMillis();
+            long hedgeDelay = Math.max(minHedgeDelayMillis, p95 > 0 ? p95 : timeoutMillis / 2);
+            if (hedgingEnabled && hedgeDelay < timeoutMillis) {
+                try {
+                    return winner.get(hedgeDelay, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException slow) {
+                    if (hedgePermit.getAsBoolean()) {
+                        running.incrementAndGet();
+                        launch(attempt, winner, running);
+                    }
+                }
+            }
+            long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            return winner.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            winner.cancel(false);
+        }
+    }
+
+    /** First success wins; the call fails only when every attempt has failed */
+    private void launch(Callable<String> attempt, CompletableFuture<String> winner, AtomicInteger running) {
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return attempt.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor).whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            } else if (running.decrementAndGet() == 0) {
+                winner.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        // Half-open: let a single probe through
+        if (probeInFlight) {
+            return false;
+        }
+        probeInFlight = true;
+        return true;
+    }
+
+    /** A half-open probe that proved nothing lets the next call probe instead */
+    private synchronized void releaseProbe() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private synchronized void onResult(boolean failed, long latencyMillis) {
+        if (latencyMillis >= 0) {
+            latencies[latencyIndex] = latencyMillis;
+            latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                state = State.CLOSED;
+                resetWindow();
+                System.out.println("✅ Gemini circuit closed");
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (outcomeCount == windowSize && outcomes[outcomeIndex]) {
+            failureCount--;
+        }
+        outcomes[outcomeIndex] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % windowSize;
+        outcomeCount = Math.min(outcomeCount + 1, windowSize);
+
+        if (outcomeCount >= minimumCalls && failureCount >= failureRateThreshold * outcomeCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        resetWindow();
+        System.err.println("⚠️ Gemini circuit opened for " + openMillis + "ms, using local rules");
+    }
+
+    private void resetWindow() {
+        Arrays.fill(outcomes, false);
+        outcomeCount = 0;
+        outcomeIndex = 0;
+        failureCount = 0;
+    }
+
+    private static Exception unwrap(Throwable error) {
+        if (error instanceof Exception exception) {
+            return exception;
+        }
+        return new ExecutionException(error);
+    }
+}
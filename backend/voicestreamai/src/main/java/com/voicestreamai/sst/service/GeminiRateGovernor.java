@@ -0,0 +1,444 @@
+package com.voicestreamai.sst.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Node-wide admission controller for Gemini calls.
+ * Keeps requests-per-minute and tokens-per-minute under quota with two token
+ * buckets and serves calls with recent CRITICAL/RISK signals before NORMAL ones.
+ * Only one request per call is ever queued: newer text is coalesced into it,
+ * and stale or overflowing NORMAL requests are shed. Requests stay in the
+ * priority queue until a worker is free, so ordering, coalescing and shedding
+ * keep working while Gemini is slow.
+ */
+@Service
+public class GeminiRateGovernor {
+
+    /** Serve order: lower ordinal is dispatched first */
+    public enum Priority {
+        CRITICAL, RISK, NORMAL
+    }
+
+    @Value("${gemini.rate.requests-per-minute:15}")
+    private int requestsPerMinute;
+
+    @Value("${gemini.rate.tokens-per-minute:1000000}")
+    private long tokensPerMinute;
+
+    @Value("${gemini.rate.max-queue-size:200}")
+    private int maxQueueSize;
+
+    @Value("${gemini.rate.normal-max-wait-ms:15000}")
+    private long normalMaxWaitMs;
+
+    @Value("${gemini.rate.max-concurrent:4}")
+    private int maxConcurrent;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparing((Ticket t) -> t.priority).thenComparingLong(t -> t.seq));
+    private final Map<String, Ticket> pendingByCall = new HashMap<>();
+
+    private TokenBucket requestBucket;
+    private TokenBucket tokenBucket;
+    private long pausedUntilNanos;
+    private long seq;
+    private int inFlight;
+
+    private ExecutorService workers;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // Metrics
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong totalQueueWaitMs = new AtomicLong();
+    private final AtomicLong maxQueueWaitMs = new AtomicLong();
+    private long lastStatsLogNanos = System.nanoTime();
+
+    @PostConstruct
+    public void init() {
+        requestBucket = new TokenBucket(Math.max(1, requestsPerMinute));
+        tokenBucket = new TokenBucket(Math.max(1, tokensPerMinute));
+
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, maxConcurrent), r -> {
+            Thread t = new Thread(r, "gemini-worker-" + workerIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "gemini-governor");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        System.out.println("🚦 Gemini governor ready (" + requestsPerMinute + " req/min, "
+                + tokensPerMinute + " tokens/min)");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        lock.lock();
+        try {
+            for (Ticket ticket : queue) {
+                ticket.future.complete(null);
+            }
+            queue.clear();
+            pendingByCall.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        dispatcher.interrupt();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue an analysis for a call. If the call already has a queued request the
+     * text is appended to it, its priority is raised if needed and the earlier
+     * future completes with null (superseded). Shed requests also complete with
+     * null, so callers should ignore null results.
+     *
+     * @param tokenEstimator estimates the token cost of the (merged) text
+     * @param analyzer       performs the actual Gemini call on a worker thread
+     */
+    public CompletableFuture<String> submit(String callId, Priority priority, String text,
+            Function<String, Integer> tokenEstimator, Function<String, String> analyzer) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            Ticket existing = pendingByCall.get(callId);
+            if (existing != null) {
+                // Coalesce into the queued request for this call
+                queue.remove(existing);
+                existing.text.append(text);
+                existing.tokens = tokenEstimator.apply(existing.text.toString());
+                if (priority.ordinal() < existing.priority.ordinal()) {
+                    existing.priority = priority;
+                }
+                existing.future.complete(null);
+                existing.future = future;
+                queue.add(existing);
+                coalesced.incrementAndGet();
+            } else {
+                Ticket ticket = new Ticket(callId, priority, text, analyzer, future, now, seq++);
+                ticket.tokens = tokenEstimator.apply(text);
+
+                if (queue.size() >= maxQueueSize && !shedOneFor(ticket)) {
+                    // Nothing less important to make room for it
+                    shed.incrementAndGet();
+                    future.complete(null);
+                    return future;
+                }
+                queue.add(ticket);
+                pendingByCall.put(callId, ticket);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Called when Gemini answers 429: stop dispatching for the given period and
+     * empty both buckets so the queue resumes at a steady rate afterwards.
+     */
+    public void onQuotaExceeded(long retryAfterMillis) {
+        throttled.incrementAndGet();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long until = now + TimeUnit.MILLISECONDS.toNanos(Math.max(1000L, retryAfterMillis));
+            pausedUntilNanos = Math.max(pausedUntilNanos, until);
+            requestBucket.drain(now);
+            tokenBucket.drain(now);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        System.err.println("⚠️ Gemini quota exceeded, pausing dispatch for " + retryAfterMillis + "ms");
+    }
+
+    /**
+     * Drop the call's queued request, if any (its future completes with null).
+     * Used when the call ends so no quota is spent on it.
+     */
+    public void cancel(String callId) {
+        lock.lock();
+        try {
+            Ticket ticket = pendingByCall.remove(callId);
+            if (ticket != null) {
+                queue.remove(ticket);
+                ticket.future.complete(null);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking permit for a hedged duplicate of an in-flight request.
+     * Granted only when quota is spare right now and nothing is queued, so
+     * hedging never delays queued calls or pushes the node over quota.
+     */
+    public boolean tryAcquireHedge(int tokens) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now < pausedUntilNanos || !queue.isEmpty()
+                    || requestBucket.nanosUntil(1, now) > 0 || tokenBucket.nanosUntil(tokens, now) > 0) {
+                return false;
+            }
+            requestBucket.consume(1, now);
+            tokenBucket.consume(tokens, now);
+            hedged.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long admittedCount = admitted.get();
+        stats.put("admitted", admittedCount);
+        stats.put("hedged", hedged.get());
+        stats.put("shed", shed.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("throttled", throttled.get());
+        stats.put("avg_queue_wait_ms", admittedCount == 0 ? 0 : totalQueueWaitMs.get() / admittedCount);
+        stats.put("max_queue_wait_ms", maxQueueWaitMs.get());
+        lock.lock();
+        try {
+            stats.put("queued", queue.size());
+            stats.put("in_flight", inFlight);
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Ticket ticket;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                shedExpired(now);
+                logStatsIfDue(now);
+
+                ticket = queue.peek();
+                if (ticket == null) {
+                    changed.await(1, TimeUnit.MINUTES);
+                    continue;
+                }
+                if (inFlight >= Math.max(1, maxConcurrent)) {
+                    // Wait for a worker; wake periodically so stale requests are still shed
+                    changed.await(1, TimeUnit.SECONDS);
+                    continue;
+                }
+
+                long waitNanos = Math.max(pausedUntilNanos - now,
+                        Math.max(requestBucket.nanosUntil(1, now), tokenBucket.nanosUntil(ticket.tokens, now)));
+                if (waitNanos > 0) {
+                    // Re-evaluate on wake-up: a higher-priority request may have arrived
+                    changed.awaitNanos(waitNanos);
+                    continue;
+                }
+
+                queue.poll();
+                pendingByCall.remove(ticket.callId);
+                requestBucket.consume(1, now);
+                tokenBucket.consume(ticket.tokens, now);
+                inFlight++;
+                recordAdmission(now - ticket.enqueuedAtNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            Ticket admittedTicket = ticket;
+            String text = admittedTicket.text.toString();
+            CompletableFuture<String> future = admittedTicket.future;
+            try {
+                workers.execute(() -> {
+                    String result = null;
+                    Exception failure = null;
+                    try {
+                        result = admittedTicket.analyzer.apply(text);
+                    } catch (Exception e) {
+                        failure = e;
+                    } finally {
+                        // Free the slot before dependent callbacks run
+                        releaseWorker();
+                    }
+                    if (failure != null) {
+                        future.completeExceptionally(failure);
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            } catch (Exception e) {
+                releaseWorker();
+                future.complete(null);
+            }
+        }
+    }
+
+    private void releaseWorker() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Must hold lock. Drop the lowest-priority, oldest request if it ranks below the newcomer. */
+    private boolean shedOneFor(Ticket incoming) {
+        Ticket victim = null;
+        for (Ticket t : queue) {
+            if (victim == null || t.priority.ordinal() > victim.priority.ordinal()
+                    || (t.priority == victim.priority && t.seq < victim.seq)) {
+                victim = t;
+            }
+        }
+        if (victim == null || victim.priority.ordinal() < incoming.priority.ordinal()) {
+            return false;
+        }
+        queue.remove(victim);
+        pendingByCall.remove(victim.callId);
+        victim.future.complete(null);
+        shed.incrementAndGet();
+        return true;
+    }
+
+    /** Must hold lock. NORMAL requests that waited too long are superseded by fresher text anyway. */
+    private void shedExpired(long now) {
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(normalMaxWaitMs);
+        queue.removeIf(t -> {
+            if (t.priority == Priority.NORMAL && now - t.enqueuedAtNanos > maxWaitNanos) {
+                pendingByCall.remove(t.callId);
+                t.future.complete(null);
+                shed.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void recordAdmission(long waitedNanos) {
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+        admitted.incrementAndGet();
+        totalQueueWaitMs.addAndGet(waitedMs);
+        maxQueueWaitMs.accumulateAndGet(waitedMs, Math::max);
+    }
+
+    /** Must hold lock. */
+    private void logStatsIfDue(long now) {
+        if (now - lastStatsLogNanos >= TimeUnit.MINUTES.toNanos(1)) {
+            lastStatsLogNanos = now;
+            if (admitted.get() > 0 || shed.get() > 0) {
+                System.out.println("📊 Gemini governor: " + getStats());
+            }
+        }
+    }
+
+    private static final class Ticket {
+        final String callId;
+        final StringBuilder text;
+        final Function<String, String> analyzer;
+        final long enqueuedAtNanos;
+        final long seq;
+        Priority priority;
+        CompletableFuture<String> future;
+        int tokens;
+
+        Ticket(String callId, Priority priority, String text, Function<String, String> analyzer,
+                CompletableFuture<String> future, long enqueuedAtNanos, long seq) {
+            this.callId = callId;
+            this.priority = priority;
+            this.text = new StringBuilder(text);
+            this.analyzer = analyzer;
+            this.future = future;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * Per-minute token bucket refilled continuously. Not thread-safe; guarded by
+     * the governor lock.
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefillNanos;
+
+        TokenBucket(long perMinute) {
+            this(perMinute, System.nanoTime());
+        }
+
+        TokenBucket(long perMinute, long nowNanos) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+            this.lastRefillNanos = nowNanos;
+        }
+
+        long nanosUntil(long amount, long now) {
+            refill(now);
+            double needed = Math.min(amount, capacity) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil(needed / refillPerNano);
+        }
+
+        void consume(long amount, long now) {
+            refill(now);
+            available -= Math.min(amount, capacity);
+        }
+
+        void drain(long now) {
+            refill(now);
+            available = 0;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefillNanos) {
+                available = Math.min(capacity, available + (now - lastRefillNanos) * refillPerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.voicestreamai.sst.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.voicestreamai.sst.model.CallScriptConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -14,8 +16,10 @@ import org.springframework.http.ResponseEntity;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
-import jakarta.annotation.PostConstruct;
-import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class GeminiService {
@@ -23,75 +27,87 @@ public class GeminiService {
     @Value("${gemini.api.key:}")
     private String apiKey;
 
-    private final String API_URL = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent";
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent}")
+    private String apiUrl;
+
+    @Value("${gemini.timeout-ms:8000}")
+    private long timeoutMs;
+
+    @Value("${gemini.breaker.window-size:20}")
+    private int breakerWindowSize;
+
+    @Value("${gemini.breaker.minimum-calls:5}")
+    private int breakerMinimumCalls;
+
+    @Value("${gemini.breaker.failure-rate-threshold:0.5}")
+    private double breakerFailureRateThreshold;
+
+    @Value("${gemini.breaker.slow-call-ms:5000}")
+    private long breakerSlowCallMs;
+
+    @Value("${gemini.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    @Value("${gemini.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${gemini.hedge.min-delay-ms:1500}")
+    private long hedgeMinDelayMs;
+
+    private RestTemplate restTemplate;
+    private ExecutorService callExecutor;
+    private GeminiCallGuard callGuard;
+
+    @Autowired
     private CallScriptConfig callScriptConfig;
 
+    @Autowired
+    private GeminiRateGovernor rateGovernor;
+
     @PostConstruct
     public void init() {
-        loadCallScript();
+        // Without timeouts a hung connection would hold a governor worker forever
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofMillis(timeoutMs));
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        restTemplate = new RestTemplate(requestFactory);
+
+        AtomicInteger callIds = new AtomicInteger();
+        callExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "gemini-call-" + callIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Quota rejections are the governor's business, not a provider failure
+        callGuard = new GeminiCallGuard(breakerWindowSize, breakerMinimumCalls, breakerFailureRateThreshold,
+                breakerSlowCallMs, breakerOpenMs, timeoutMs, hedgeEnabled, hedgeMinDelayMs, callExecutor,
+                System::currentTimeMillis, e -> !(e instanceof HttpClientErrorException.TooManyRequests));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdownNow();
     }
 
     /**
-     * Load callScript.json configuration on service initialization
+     * False when no API key is configured or the circuit breaker is open;
+     * callers should use local rules instead of queueing an analysis.
      */
-    private void loadCallScript() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
-
-            ClassPathResource resource = new ClassPathResource("callScript.json");
-            callScriptConfig = mapper.readValue(resource.getInputStream(), CallScriptConfig.class);
-
-            System.out.println("✅ Loaded callScript.json successfully");
-        } catch (IOException e) {
-            System.err.println("❌ Failed to load callScript.json: " + e.getMessage());
-            callScriptConfig = new CallScriptConfig();
-        }
+    public boolean isAvailable() {
+        return isApiKeyConfigured() && callGuard.isCallPermitted();
     }
 
     /**
-     * Build dynamic AI prompt with realistic scoring and severity detection
+     * Build AI prompt for tone and context quality only. Greeting, steps,
+     * empathy, closing and keyword violations are scored locally by
+     * LocalComplianceScorer.
      */
     private String buildPrompt(String transcript) {
         StringBuilder prompt = new StringBuilder();
 
         prompt.append(
-                "You are monitoring a LIVE customer service call for real-time compliance and risk detection.\\n\\n");
-
-        // Severity System
-        prompt.append("**ALERT SEVERITY LEVELS**:\\n");
-        prompt.append("🔴 CRITICAL (Immediate action required):\\n");
-
-        if (callScriptConfig.getConstraints() != null
-                && callScriptConfig.getConstraints().getCriticalViolations() != null) {
-            CallScriptConfig.Constraints.CriticalViolations critical = callScriptConfig.getConstraints()
-                    .getCriticalViolations();
-
-            if (critical.getHighRiskWords() != null && !critical.getHighRiskWords().isEmpty()) {
-                prompt.append("- High-risk: ").append(String.join(", ", critical.getHighRiskWords())).append("\\n");
-            }
-
-            if (critical.getSocialMediaThreats() != null && !critical.getSocialMediaThreats().isEmpty()) {
-                prompt.append("- Social media threats: ").append(String.join(", ", critical.getSocialMediaThreats()))
-                        .append("\\n");
-            }
-
-            if (critical.getRundeLanguage() != null && !critical.getRundeLanguage().isEmpty()) {
-                prompt.append("- Rude language: ").append(String.join(", ", critical.getRundeLanguage())).append("\\n");
-            }
-        }
-
-        prompt.append("\\n🟠 RISK (Escalation needed):\\n");
-        if (callScriptConfig.getConstraints() != null
-                && callScriptConfig.getConstraints().getRiskViolations() != null) {
-            CallScriptConfig.Constraints.RiskViolations risk = callScriptConfig.getConstraints().getRiskViolations();
-            if (risk.getPriorityCaseKeywords() != null && !risk.getPriorityCaseKeywords().isEmpty()) {
-                prompt.append("- Priority: ").append(String.join(", ", risk.getPriorityCaseKeywords())).append("\\n");
-            }
-        }
-
-        prompt.append("\\n🟡 ALERT: Missing mandatory steps\\n\\n");
+                "You are monitoring a LIVE customer service call. Judge ONLY the agent's tone and the conversation context.\\n\\n");
 
         // AI Context Analysis
         prompt.append("**AI CONTEXT ANALYSIS** (Judge agent behavior):\\n");
@@ -123,79 +139,30 @@ public class GeminiService {
                     "If agent's behavior triggers customer frustration like these, mark context_quality as BAD\\n\\n");
         }
 
-        // Realistic Scoring Formula
-        prompt.append("**REALISTIC PROGRESSIVE SCORING** (Award generously):\\n");
-        prompt.append("- Professional Greeting (20 pts)\\n");
-        prompt.append("- Active Engagement (10 pts)\\n");
-        prompt.append("- Mandatory Steps (49 pts total, 7 pts each):\\n");
-
-        if (callScriptConfig.getMandatorySteps() != null && !callScriptConfig.getMandatorySteps().isEmpty()) {
-            for (int i = 0; i < callScriptConfig.getMandatorySteps().size(); i++) {
-                prompt.append("  ").append(i + 1).append(". ").append(callScriptConfig.getMandatorySteps().get(i))
-                        .append(" (7 pts)\\n");
-            }
-        }
-
-        prompt.append("- Empathy Statements (10 pts)\\n");
-        prompt.append("- Professional Closing (11 pts)\\n");
-        prompt.append("- PENALTY: -30 pts for CRITICAL violations OR BAD context\\n\\n");
-
-        // Opening/Closing
-        if (callScriptConfig.getOpeningLines() != null && !callScriptConfig.getOpeningLines().isEmpty()) {
-            prompt.append("**OPENING** (check at start): ")
-                    .append(String.join(" OR ", callScriptConfig.getOpeningLines())).append("\\n\\n");
-        }
-
-        if (callScriptConfig.getClosingLines() != null && !callScriptConfig.getClosingLines().isEmpty()) {
-            prompt.append("**CLOSING** (only if call ending): ")
-                    .append(String.join(" OR ", callScriptConfig.getClosingLines())).append("\\n");
-            prompt.append("Note: Don't mark missing if call ongoing\\n\\n");
-        }
-
-        // Rules
-        prompt.append("**DETECTION RULES**:\\n");
-        prompt.append("1. Check CRITICAL violations FIRST\\n");
-        prompt.append("2. Analyze agent TONE and CONTEXT\\n");
-        prompt.append("3. Award points for every completed step\\n");
-        prompt.append("4. Be PRACTICAL and REALISTIC\\n\\n");
-
-        // Output Format with Context Analysis
+        // Output Format
         prompt.append("**OUTPUT** (valid JSON only):\\n");
         prompt.append("{\\n");
-        prompt.append("  \\\"score\\\": <0-100>,\\n");
-        prompt.append("  \\\"status\\\": \\\"IN_PROGRESS\\\"|\\\"PASS\\\"|\\\"FAIL\\\",\\n");
-        prompt.append("  \\\"severity\\\": \\\"NORMAL\\\"|\\\"ALERT\\\"|\\\"RISK\\\"|\\\"CRITICAL\\\",\\n");
-        prompt.append("  \\\"completed_steps\\\": [<array>],\\n");
-        prompt.append("  \\\"missing_steps\\\": [<array>],\\n");
-        prompt.append("  \\\"critical_violations\\\": [<array>],\\n");
-        prompt.append("  \\\"risk_violations\\\": [<array>],\\n");
-        prompt.append("  \\\"alerts\\\": [<array>],\\n");
-        prompt.append("  \\\"high_risk_detected\\\": <boolean>,\\n");
-        prompt.append("  \\\"rude_language_detected\\\": <boolean>,\\n");
-        prompt.append("  \\\"social_media_threat_detected\\\": <boolean>,\\n");
-        prompt.append("  \\\"priority_case_detected\\\": <boolean>,\\n");
-        prompt.append("  \\\"empathy_count\\\": <number>,\\n");
         prompt.append("  \\\"agent_tone\\\": \\\"PROFESSIONAL\\\" | \\\"NEUTRAL\\\" | \\\"UNPROFESSIONAL\\\",\\n");
         prompt.append("  \\\"context_quality\\\": \\\"GOOD\\\" | \\\"ACCEPTABLE\\\" | \\\"BAD\\\",\\n");
         prompt.append("  \\\"behavior_issues\\\": [<array of behavioral problems if any>]\\n");
         prompt.append("}\\n\\n");
 
-        prompt.append("**SEVERITY**:\\n");
-        prompt.append("CRITICAL if rude/social_media/high_risk OR context_quality=BAD | ");
-        prompt.append("RISK if priority | ALERT if missing_steps | NORMAL otherwise\\n\\n");
-
-        prompt.append("**STATUS**:\\n");
-        prompt.append(
-                "IN_PROGRESS: ongoing | PASS: all done + good context | FAIL: critical violation OR bad context OR incomplete\\n\\n");
-
         prompt.append("**TRANSCRIPT**: \\\"").append(transcript).append("\\\"\\n\\n");
         prompt.append("Be professional, practical, simple. Focus on TONE and CONTEXT, not just words.");
 
         return prompt.toString();
     }
 
+    /**
+     * Rough token cost of analyzing a transcript (~4 characters per token),
+     * used by the rate governor for tokens-per-minute accounting
+     */
+    public int estimateTokens(String transcript) {
+        return buildPrompt(transcript).length() / 4 + 1;
+    }
+
     public String analyzeText(String transcript) {
-        if (apiKey == null || apiKey.isEmpty() || "YOUR_GEMINI_API_KEY".equals(apiKey)) {
+        if (!isApiKeyConfigured()) {
             System.err.println("⚠️ Gemini API Key not configured.");
             return createErrorResponse("API key not configured");
         }
@@ -212,35 +179,62 @@ public class GeminiService {
             JSONObject requestBody = new JSONObject();
             requestBody.put("contents", new JSONArray().put(content));
 
-            // Headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<String> request = new HttpEntity<>(requestBody.toString(), headers);
-
-            // Send Request
-            String url = API_URL + "?key=" + apiKey;
-            ResponseEntity<String> response = restTemplate.postForEntity(url, request, String.class);
-
-            // Parse Response
-            JSONObject jsonResponse = new JSONObject(response.getBody());
-            String resultText = jsonResponse.getJSONArray("candidates")
-                    .getJSONObject(0)
-                    .getJSONObject("content")
-                    .getJSONArray("parts")
-                    .getJSONObject(0)
-                    .getString("text");
+            // Bounded by the circuit breaker; hedged once past the recent p95 latency
+            int tokens = estimateTokens(transcript);
+            String resultText = callGuard.call(() -> sendRequest(requestBody.toString()),
+                    () -> rateGovernor.tryAcquireHedge(tokens));
 
             resultText = extractJSON(resultText);
             return resultText.trim();
 
+        } catch (GeminiCallGuard.CallNotPermittedException e) {
+            return createErrorResponse("AI analysis unavailable");
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            // Back off node-wide; the caller judges this window by local rules
+            rateGovernor.onQuotaExceeded(parseRetryAfterMillis(e));
+            return createErrorResponse("AI quota exceeded");
         } catch (Exception e) {
-            System.err.println("❌ Gemini API Error: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("❌ Gemini API Error: " + e);
             return createErrorResponse("AI analysis failed: " + e.getMessage());
         }
     }
 
+    private String sendRequest(String requestBody) {
+        // Headers
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<String> request = new HttpEntity<>(requestBody, headers);
+
+        // Send Request
+        String url = apiUrl + "?key=" + apiKey;
+        ResponseEntity<String> response = restTemplate.postForEntity(url, request, String.class);
+
+        // Parse Response
+        JSONObject jsonResponse = new JSONObject(response.getBody());
+        return jsonResponse.getJSONArray("candidates")
+                .getJSONObject(0)
+                .getJSONObject("content")
+                .getJSONArray("parts")
+                .getJSONObject(0)
+                .getString("text");
+    }
+
+    private boolean isApiKeyConfigured() {
+        return apiKey != null && !apiKey.isEmpty() && !"YOUR_GEMINI_API_KEY".equals(apiKey);
+    }
+
+    private long parseRetryAfterMillis(HttpClientErrorException e) {
+        String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst("Retry-After") : null;
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000L;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return 5000L;
+    }
+
     private String extractJSON(String text) {
         if (text.contains("```json")) {
             int start = text.indexOf("```json") + 7;
@@ -259,20 +253,9 @@ public class GeminiService {
     }
 
     private String createErrorResponse(String errorMessage) {
+        // No agent_tone: LocalComplianceScorer keeps its previous tone assessment
         JSONObject error = new JSONObject();
-        error.put("score", 0);
-        error.put("status", "IN_PROGRESS");
-        error.put("severity", "NORMAL");
-        error.put("alerts", new JSONArray().put(errorMessage));
-        error.put("high_risk_detected", false);
-        error.put("priority_case_detected", false);
-        error.put("rude_language_detected", false);
-        error.put("social_media_threat_detected", false);
-        error.put("completed_steps", new JSONArray());
-        error.put("missing_steps", new JSONArray());
-        error.put("critical_violations", new JSONArray());
-        error.put("risk_violations", new JSONArray());
-        error.put("empathy_count", 0);
+        error.put("error", errorMessage);
         return error.toString();
     }
 }
@@ -0,0 +1,464 @@
+package com.voicestreamai.sst.service;
+
+import com.voicestreamai.sst.model.CallScriptConfig;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deterministic scorer for the rule-based part of the call script.
+ * Detects opening/closing lines, mandatory steps and empathy phrases (fuzzily,
+ * see {@link FuzzyPhraseIndex}) and critical/risk keywords (exactly) from
+ * callScript.json in the accumulated transcript,
+ * using the same point table the Gemini prompt used to describe. Gemini is only
+ * consulted for agent tone and context quality (see {@link #applyToneAssessment});
+ * when it is unavailable a coarse rule-based judgement stands in
+ * (see {@link #applyLocalToneAssessment}).
+ */
+@Service
+public class LocalComplianceScorer {
+
+    public static final int GREETING_POINTS = 20;
+    public static final int ENGAGEMENT_POINTS = 10;
+    public static final int STEP_POINTS = 7;
+    public static final int EMPATHY_POINTS = 10;
+    public static final int CLOSING_POINTS = 11;
+    public static final int VIOLATION_PENALTY = 30;
+
+    // Scan long segments in bounded chunks so per-query CPU stays flat
+    private static final int MAX_CHUNK_WORDS = 48;
+
+    @Autowired
+    private CallScriptConfig callScriptConfig;
+
+    @Value("${compliance.fuzzy.min-confidence:0.8}")
+    private double fuzzyMinConfidence;
+
+    @Value("${compliance.fuzzy.max-candidates:32}")
+    private int fuzzyMaxCandidates;
+
+    // Script phrases, precompiled once from callScript.json
+    private FuzzyPhraseIndex<ScriptItem> phraseIndex;
+    private List<String> mandatorySteps;
+    private String empathyStep;
+    private Map<String, String> highRiskWords;
+    private Map<String, String> socialMediaThreats;
+    private Map<String, String> rudeLanguage;
+    private Map<String, String> priorityKeywords;
+    private int minimumEmpathyCount;
+    private int tailWords;
+
+    @PostConstruct
+    public void init() {
+        phraseIndex = new FuzzyPhraseIndex<>(fuzzyMinConfidence, fuzzyMaxCandidates);
+        addPhrases(callScriptConfig.getOpeningLines(), new ScriptItem(Kind.OPENING, "greeting"));
+        addPhrases(callScriptConfig.getClosingLines(), new ScriptItem(Kind.CLOSING, "closing"));
+        addPhrases(callScriptConfig.getEmpathyPhrases(), new ScriptItem(Kind.EMPATHY, "empathy"));
+        if (callScriptConfig.getSampleCriticalPhrases() != null) {
+            addPhrases(callScriptConfig.getSampleCriticalPhrases().getCustomerDisconnectionStatements(),
+                    new ScriptItem(Kind.FRUSTRATION, "customer_frustration"));
+        }
+
+        // Completed by the empathy count, so it needs no cues of its own
+        empathyStep = callScriptConfig.getEmpathyStep();
+        mandatorySteps = new ArrayList<>();
+        if (callScriptConfig.getMandatorySteps() != null) {
+            Map<String, List<String>> cues = callScriptConfig.getMandatoryStepCues() != null
+                    ? callScriptConfig.getMandatoryStepCues()
+                    : Collections.emptyMap();
+            for (String step : callScriptConfig.getMandatorySteps()) {
+                mandatorySteps.add(step);
+                addPhrases(cues.get(step), new ScriptItem(Kind.STEP, step));
+            }
+        }
+
+        CallScriptConfig.Constraints constraints = callScriptConfig.getConstraints();
+        CallScriptConfig.Constraints.CriticalViolations critical = constraints != null
+                ? constraints.getCriticalViolations()
+                : null;
+        highRiskWords = keywordMap(critical != null ? critical.getHighRiskWords() : null);
+        socialMediaThreats = keywordMap(critical != null ? critical.getSocialMediaThreats() : null);
+        rudeLanguage = keywordMap(critical != null ? critical.getRudeLanguage() : null);
+        priorityKeywords = keywordMap(constraints != null && constraints.getRiskViolations() != null
+                ? constraints.getRiskViolations().getPriorityCaseKeywords()
+                : null);
+        minimumEmpathyCount = constraints != null ? Math.max(1, constraints.getMinimumEmpathyCount()) : 1;
+
+        // Keep enough earlier words to catch phrases split across segments; ASR
+        // may split one script word into two, hence the slack
+        int longest = phraseIndex.getMaxPhraseWords();
+        for (Map<String, String> keywords : List.of(highRiskWords, socialMediaThreats, rudeLanguage,
+                priorityKeywords)) {
+            for (String keyword : keywords.keySet()) {
+                longest = Math.max(longest, keyword.split(" ").length);
+            }
+        }
+        tailWords = longest * 2;
+    }
+
+    public CallScore newCall() {
+        return new CallScore(mandatorySteps.size());
+    }
+
+    /**
+     * Update a call's detections with a new transcript segment. Only the segment
+     * plus a short tail of earlier words is scanned, so cost is independent of
+     * call length.
+     */
+    public void ingest(CallScore score, String segment) {
+        String normalized = normalize(segment);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        List<String> words = Arrays.asList(normalized.split(" "));
+        for (int from = 0; from < words.size(); from += MAX_CHUNK_WORDS) {
+            ingestChunk(score, words.subList(from, Math.min(words.size(), from + MAX_CHUNK_WORDS)));
+        }
+    }
+
+    private void ingestChunk(CallScore score, List<String> chunk) {
+        List<String> window = new ArrayList<>(score.tail.size() + chunk.size());
+        window.addAll(score.tail);
+        window.addAll(chunk);
+        int newWordStart = score.tail.size();
+
+        // Script lines: fuzzy, tolerant of ASR errors
+        List<FuzzyPhraseIndex.Match<ScriptItem>> empathyMatches = new ArrayList<>();
+        for (FuzzyPhraseIndex.Match<ScriptItem> match : phraseIndex.search(window)) {
+            ScriptItem item = match.getTag();
+            if (item.kind() == Kind.FRUSTRATION) {
+                // Judged per analysis window, see applyLocalToneAssessment
+                continue;
+            }
+            switch (item.kind()) {
+                case OPENING -> score.greetingDetected = true;
+                case CLOSING -> score.closingDetected = true;
+                case STEP -> score.completedSteps.add(item.name());
+                case EMPATHY -> {
+                    // Occurrences ending in the tail were counted with the previous segment
+                    if (match.getEndWord() >= newWordStart) {
+                        empathyMatches.add(match);
+                    }
+                }
+                default -> {
+                }
+            }
+            score.matchConfidence.merge(item.name(), match.getConfidence(), Math::max);
+        }
+        score.empathyCount += countNonOverlapping(empathyMatches);
+
+        // Violation keywords: exact, a fuzzy false positive here would be costly
+        String text = " " + String.join(" ", window) + " ";
+        collect(text, highRiskWords, "High-risk", score.criticalViolations, score.detectedKeywords);
+        collect(text, socialMediaThreats, "Social media threat", score.criticalViolations, score.detectedKeywords);
+        collect(text, rudeLanguage, "Rude language", score.criticalViolations, score.detectedKeywords);
+        collect(text, priorityKeywords, "Priority case", score.riskViolations, score.detectedKeywords);
+        score.highRiskDetected |= containsAnyKey(score.detectedKeywords, highRiskWords);
+        score.socialMediaThreatDetected |= containsAnyKey(score.detectedKeywords, socialMediaThreats);
+        score.rudeLanguageDetected |= containsAnyKey(score.detectedKeywords, rudeLanguage);
+        score.priorityCaseDetected |= containsAnyKey(score.detectedKeywords, priorityKeywords);
+
+        int keep = Math.min(window.size(), tailWords);
+        score.tail = new ArrayList<>(window.subList(window.size() - keep, window.size()));
+    }
+
+    /**
+     * Merge Gemini's tone/context judgement into the call. Payloads without an
+     * agent_tone (errors, unparsable answers) are ignored and false is returned.
+     */
+    public boolean applyToneAssessment(CallScore score, String geminiResult) {
+        try {
+            JSONObject json = new JSONObject(geminiResult);
+            if (!json.has("agent_tone")) {
+                return false;
+            }
+            score.toneSource = "AI";
+            score.agentTone = json.optString("agent_tone", score.agentTone);
+            score.contextQuality = json.optString("context_quality", score.contextQuality);
+            score.behaviorIssues.clear();
+            JSONArray issues = json.optJSONArray("behavior_issues");
+            if (issues != null) {
+                for (int i = 0; i < issues.length(); i++) {
+                    score.behaviorIssues.add(issues.optString(i));
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("⚠️ Ignoring unparsable tone assessment: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Rule-based stand-in for Gemini's tone/context judgement of one analysis
+     * window, used while Gemini is unavailable: rude language makes the tone
+     * UNPROFESSIONAL, a customer frustration phrase from callScript.json makes
+     * the context BAD, empathy phrases make the tone PROFESSIONAL.
+     */
+    public void applyLocalToneAssessment(CallScore score, String text) {
+        String normalized = normalize(text);
+        List<String> words = normalized.isEmpty() ? List.of() : Arrays.asList(normalized.split(" "));
+
+        Set<String> frustration = new LinkedHashSet<>();
+        boolean empathy = false;
+        for (int from = 0; from < words.size(); from += MAX_CHUNK_WORDS) {
+            List<String> window = words.subList(Math.max(0, from - tailWords),
+                    Math.min(words.size(), from + MAX_CHUNK_WORDS));
+            for (FuzzyPhraseIndex.Match<ScriptItem> match : phraseIndex.search(window)) {
+                switch (match.getTag().kind()) {
+                    case FRUSTRATION -> frustration.add(match.getPhrase());
+                    case EMPATHY -> empathy = true;
+                    default -> {
+                    }
+                }
+            }
+        }
+        String padded = " " + normalized + " ";
+        boolean rude = rudeLanguage.keySet().stream().anyMatch(k -> padded.contains(" " + k + " "));
+
+        score.toneSource = "LOCAL_RULES";
+        score.behaviorIssues.clear();
+        if (rude) {
+            score.agentTone = "UNPROFESSIONAL";
+            score.behaviorIssues.add("Rude language used");
+        } else {
+            score.agentTone = empathy ? "PROFESSIONAL" : "NEUTRAL";
+        }
+        for (String phrase : frustration) {
+            score.behaviorIssues.add("Customer frustration: \"" + phrase + "\"");
+        }
+        if (rude || !frustration.isEmpty()) {
+            score.contextQuality = "BAD";
+        } else {
+            score.contextQuality = empathy ? "GOOD" : "ACCEPTABLE";
+        }
+    }
+
+    /**
+     * Render the call's current state in the same JSON shape the agent UI
+     * already consumes
+     */
+    public String toResult(CallScore score) {
+        boolean critical = !score.criticalViolations.isEmpty();
+        boolean badContext = "BAD".equals(score.contextQuality);
+        boolean empathyMet = score.empathyCount >= minimumEmpathyCount;
+        Set<String> completedSteps = new LinkedHashSet<>(score.completedSteps);
+        if (empathyMet && empathyStep != null && mandatorySteps.contains(empathyStep)) {
+            completedSteps.add(empathyStep);
+        }
+
+        int points = 0;
+        if (score.greetingDetected) {
+            points += GREETING_POINTS;
+        }
+        points += engagementPoints(score.agentTone);
+        points += STEP_POINTS * completedSteps.size();
+        if (empathyMet) {
+            points += EMPATHY_POINTS;
+        }
+        if (score.closingDetected) {
+            points += CLOSING_POINTS;
+        }
+        if (critical || badContext) {
+            points -= VIOLATION_PENALTY;
+        }
+        points = Math.max(0, Math.min(100, points));
+
+        List<String> missingSteps = new ArrayList<>();
+        for (String step : mandatorySteps) {
+            if (!completedSteps.contains(step)) {
+                missingSteps.add(step);
+            }
+        }
+
+        String severity;
+        if (critical || badContext) {
+            severity = "CRITICAL";
+        } else if (!score.riskViolations.isEmpty()) {
+            severity = "RISK";
+        } else if (!missingSteps.isEmpty()) {
+            severity = "ALERT";
+        } else {
+            severity = "NORMAL";
+        }
+
+        String status = "IN_PROGRESS";
+        if (score.closingDetected) {
+            boolean passed = !critical && !badContext && missingSteps.isEmpty() && empathyMet;
+            status = passed ? "PASS" : "FAIL";
+        }
+
+        JSONArray alerts = new JSONArray();
+        if (!score.greetingDetected) {
+            alerts.put("Professional greeting not detected yet");
+        }
+        if (!empathyMet) {
+            alerts.put("Empathy statements: " + score.empathyCount + "/" + minimumEmpathyCount);
+        }
+        for (String issue : score.behaviorIssues) {
+            alerts.put(issue);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("score", points);
+        result.put("status", status);
+        result.put("severity", severity);
+        result.put("completed_steps", new JSONArray(completedSteps));
+        result.put("missing_steps", new JSONArray(missingSteps));
+        result.put("critical_violations", new JSONArray(score.criticalViolations));
+        result.put("risk_violations", new JSONArray(score.riskViolations));
+        result.put("alerts", alerts);
+        result.put("high_risk_detected", score.highRiskDetected);
+        result.put("rude_language_detected", score.rudeLanguageDetected);
+        result.put("social_media_threat_detected", score.socialMediaThreatDetected);
+        result.put("priority_case_detected", score.priorityCaseDetected);
+        result.put("empathy_count", score.empathyCount);
+        result.put("greeting_detected", score.greetingDetected);
+        result.put("closing_detected", score.closingDetected);
+        result.put("agent_tone", score.agentTone);
+        result.put("context_quality", score.contextQuality);
+        result.put("behavior_issues", new JSONArray(score.behaviorIssues));
+        result.put("tone_source", score.toneSource);
+
+        JSONObject confidence = new JSONObject();
+        for (Map.Entry<String, Double> match : score.matchConfidence.entrySet()) {
+            confidence.put(match.getKey(), Math.round(match.getValue() * 100) / 100.0);
+        }
+        result.put("match_confidence", confidence);
+        return result.toString();
+    }
+
+    private int engagementPoints(String agentTone) {
+        return switch (agentTone) {
+            case "PROFESSIONAL" -> ENGAGEMENT_POINTS;
+            case "NEUTRAL" -> ENGAGEMENT_POINTS / 2;
+            default -> 0;
+        };
+    }
+
+    private void addPhrases(List<String> phrases, ScriptItem item) {
+        if (phrases != null) {
+            for (String phrase : phrases) {
+                phraseIndex.add(normalize(phrase), item);
+            }
+        }
+    }
+
+    private static void collect(String window, Map<String, String> keywords, String label,
+            Set<String> violations, Set<String> detected) {
+        for (Map.Entry<String, String> keyword : keywords.entrySet()) {
+            if (!detected.contains(keyword.getKey()) && window.contains(" " + keyword.getKey() + " ")) {
+                detected.add(keyword.getKey());
+                violations.add(label + ": " + keyword.getValue());
+            }
+        }
+    }
+
+    private static boolean containsAnyKey(Set<String> detected, Map<String, String> keywords) {
+        for (String key : keywords.keySet()) {
+            if (detected.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Overlapping empathy phrases ("i am sorry" inside "i am sorry for the inconvenience") count once */
+    private static int countNonOverlapping(List<FuzzyPhraseIndex.Match<ScriptItem>> matches) {
+        matches.sort((a, b) -> Integer.compare(a.getEndWord(), b.getEndWord()));
+        int count = 0;
+        int lastEnd = -1;
+        for (FuzzyPhraseIndex.Match<ScriptItem> match : matches) {
+            if (match.getStartWord() > lastEnd) {
+                count++;
+                lastEnd = match.getEndWord();
+            }
+        }
+        return count;
+    }
+
+    private static Map<String, String> keywordMap(List<String> keywords) {
+        Map<String, String> map = new LinkedHashMap<>();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                String normalized = normalize(keyword);
+                if (!normalized.isEmpty()) {
+                    map.put(normalized, keyword);
+                }
+            }
+        }
+        return map;
+    }
+
+    /** Lowercase, strip punctuation and collapse whitespace */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString();
+    }
+
+    private enum Kind {
+        OPENING, CLOSING, STEP, EMPATHY, FRUSTRATION
+    }
+
+    /** What a script phrase proves when it is heard */
+    private record ScriptItem(Kind kind, String name) {
+    }
+
+    /**
+     * Mutable per-call detection state. Not thread-safe; callers synchronize
+     * per call.
+     */
+    public static final class CallScore {
+        private final Set<String> completedSteps;
+        private final Set<String> criticalViolations = new LinkedHashSet<>();
+        private final Set<String> riskViolations = new LinkedHashSet<>();
+        private final Set<String> detectedKeywords = new LinkedHashSet<>();
+        private final List<String> behaviorIssues = new ArrayList<>();
+        private final Map<String, Double> matchConfidence = new LinkedHashMap<>();
+        private boolean greetingDetected;
+        private boolean closingDetected;
+        private boolean highRiskDetected;
+        private boolean rudeLanguageDetected;
+        private boolean socialMediaThreatDetected;
+        private boolean priorityCaseDetected;
+        private int empathyCount;
+        private String agentTone = "UNKNOWN";
+        private String contextQuality = "UNKNOWN";
+        private String toneSource = "NONE";
+        private List<String> tail = new ArrayList<>();
+
+        private CallScore(int stepCount) {
+            this.completedSteps = new LinkedHashSet<>(stepCount * 2);
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.voicestreamai.sst.service;
 
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.util.concurrent.CompletableFuture;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ScriptComplianceService {
@@ -10,34 +17,166 @@ public class ScriptComplianceService {
     @Autowired
     private GeminiService geminiService;
 
-    // Buffer to accumulate text before sending to AI (to save API calls and provide
-    // context)
-    private StringBuilder transcriptBuffer = new StringBuilder();
-    private long lastAnalysisTime = System.currentTimeMillis();
+    @Autowired
+    private GeminiRateGovernor rateGovernor;
+
+    @Autowired
+    private LocalComplianceScorer localScorer;
+
     private static final int BUFFER_THRESHOLD = 50; // Characters
     private static final long TIME_THRESHOLD = 3000; // Milliseconds
+    private static final long RECENT_SEVERITY_WINDOW = 60000; // Milliseconds
+
+    // Per-call buffers, keyed by agent session id
+    private final Map<String, CallState> calls = new ConcurrentHashMap<>();
+
+    // Gemini results are applied here: the callback sends to the agent, which
+    // may block, and must not hold a Gemini worker while it does
+    private final AtomicInteger callbackIds = new AtomicInteger();
+    private final ExecutorService callbacks = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "compliance-callback-" + callbackIds.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        callbacks.shutdownNow();
+    }
+
+    /** Create per-call state when the agent connects */
+    public void startCall(String callId) {
+        calls.putIfAbsent(callId, new CallState(localScorer.newCall()));
+    }
+
+    /**
+     * Score the transcript locally right away and, at buffered intervals, ask
+     * Gemini for a tone/context assessment that is merged into the next score.
+     * The callback receives every changed score for the call.
+     */
+    public void analyzeAsync(String callId, String transcript, java.util.function.Consumer<String> callback) {
+        CallState state = calls.get(callId);
+        if (state == null) {
+            // Not started, or a late transcript of a call that already ended
+            return;
+        }
+
+        String textToAnalyze = null;
+        synchronized (state) {
+            // Deterministic part of the score: sub-millisecond, no API call
+            localScorer.ingest(state.score, transcript);
+            state.emitIfChanged(localScorer.toResult(state.score), callback);
+
+            // Buffer to accumulate text before sending to AI (to save API calls and
+            // provide context)
+            state.transcriptBuffer.append(transcript).append(" ");
+
+            long currentTime = System.currentTimeMillis();
+            boolean bufferFull = state.transcriptBuffer.length() >= BUFFER_THRESHOLD;
+            boolean timeElapsed = (currentTime - state.lastAnalysisTime) >= TIME_THRESHOLD;
 
-    public void analyzeAsync(String transcript, java.util.function.Consumer<String> callback) {
-        transcriptBuffer.append(transcript).append(" ");
+            if (bufferFull || timeElapsed) {
+                textToAnalyze = state.transcriptBuffer.toString();
 
-        long currentTime = System.currentTimeMillis();
-        boolean bufferFull = transcriptBuffer.length() >= BUFFER_THRESHOLD;
-        boolean timeElapsed = (currentTime - lastAnalysisTime) >= TIME_THRESHOLD;
+                // Reset buffer
+                state.transcriptBuffer.setLength(0);
+                state.lastAnalysisTime = currentTime;
+            }
+        }
+
+        if (textToAnalyze == null) {
+            return;
+        }
+
+        String windowText = textToAnalyze;
+        if (!geminiService.isAvailable()) {
+            // Circuit open or no API key: judge tone by rules instead of waiting on Gemini
+            synchronized (state) {
+                localScorer.applyLocalToneAssessment(state.score, windowText);
+                state.emitIfChanged(localScorer.toResult(state.score), callback);
+            }
+            return;
+        }
+
+        // Queue tone analysis; calls with recent CRITICAL/RISK results are served first
+        rateGovernor.submit(callId, state.priority(), windowText,
+                geminiService::estimateTokens, geminiService::analyzeText)
+                .thenAcceptAsync(toneResult -> {
+                    if (toneResult != null) {
+                        synchronized (state) {
+                            // Failed or rejected call: fall back to rules for this window
+                            if (!localScorer.applyToneAssessment(state.score, toneResult)) {
+                                localScorer.applyLocalToneAssessment(state.score, windowText);
+                            }
+                            state.emitIfChanged(localScorer.toResult(state.score), callback);
+                        }
+                    }
+                }, callbacks)
+                .exceptionally(e -> {
+                    System.err.println("❌ Compliance analysis failed: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /** Release per-call state once the agent disconnects */
+    public void endCall(String callId) {
+        calls.remove(callId);
+        rateGovernor.cancel(callId);
+    }
+
+    private static final class CallState {
+        private final LocalComplianceScorer.CallScore score;
+        private final StringBuilder transcriptBuffer = new StringBuilder();
+        private long lastAnalysisTime = System.currentTimeMillis();
+        private volatile String lastSeverity = "NORMAL";
+        private volatile long lastSeverityTime;
+        private String lastResult;
+        private int lastSignalCount;
+
+        CallState(LocalComplianceScorer.CallScore score) {
+            this.score = score;
+        }
 
-        if (bufferFull || timeElapsed) {
-            String textToAnalyze = transcriptBuffer.toString();
+        /** Must hold the state lock so results reach the callback in order */
+        void emitIfChanged(String result, java.util.function.Consumer<String> callback) {
+            if (result.equals(lastResult)) {
+                return;
+            }
+            lastResult = result;
+            recordSeverity(result);
+            callback.accept(result);
+        }
 
-            // Reset buffer
-            transcriptBuffer.setLength(0);
-            lastAnalysisTime = currentTime;
+        GeminiRateGovernor.Priority priority() {
+            if (System.currentTimeMillis() - lastSeverityTime > RECENT_SEVERITY_WINDOW) {
+                return GeminiRateGovernor.Priority.NORMAL;
+            }
+            return switch (lastSeverity) {
+                case "CRITICAL" -> GeminiRateGovernor.Priority.CRITICAL;
+                case "RISK" -> GeminiRateGovernor.Priority.RISK;
+                default -> GeminiRateGovernor.Priority.NORMAL;
+            };
+        }
 
-            // Run AI analysis asynchronously
-            CompletableFuture.runAsync(() -> {
-                String analysisResult = geminiService.analyzeText(textToAnalyze);
-                if (analysisResult != null) {
-                    callback.accept(analysisResult);
+        /** Only a new violation refreshes the signal; standing ones decay to NORMAL */
+        void recordSeverity(String analysisResult) {
+            try {
+                JSONObject json = new JSONObject(analysisResult);
+                String severity = json.optString("severity", "NORMAL");
+                int signals = lengthOf(json, "critical_violations") + lengthOf(json, "risk_violations")
+                        + ("BAD".equals(json.optString("context_quality")) ? 1 : 0);
+                if (signals > lastSignalCount && !"NORMAL".equals(severity) && !"ALERT".equals(severity)) {
+                    lastSeverity = severity;
+                    lastSeverityTime = System.currentTimeMillis();
                 }
-            });
+                lastSignalCount = signals;
+            } catch (Exception ignored) {
+                // Non-JSON answer; keep the previous signal
+            }
+        }
+
+        private static int lengthOf(JSONObject json, String key) {
+            return json.optJSONArray(key) != null ? json.optJSONArray(key).length() : 0;
         }
     }
 }
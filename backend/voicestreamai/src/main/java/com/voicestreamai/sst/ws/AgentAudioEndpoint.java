@@ -1,63 +1,118 @@
 package com.voicestreamai.sst.ws;
 
-import com.voicestreamai.sst.config.ApplicationContextProvider;
 import com.voicestreamai.sst.service.ScriptComplianceService;
-import jakarta.websocket.*;
-import jakarta.websocket.server.ServerEndpoint;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
-import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import org.json.JSONObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WebSocket endpoint for Chrome Extension
  * Receives audio from agent microphone and forwards to VoiceStreamAI
  */
 @Component
-@ServerEndpoint("/ws/agent-audio")
-public class AgentAudioEndpoint {
-
-    private Session clientSession; // Chrome extension
-    private Session voiceStreamSession; // VoiceStreamAI server
-
-    @OnOpen
-    public void onOpen(Session session) {
-        this.clientSession = session;
-        // Set timeout to 24 hours (86400000ms) - only disconnect when user stops
-        // manually
-        this.clientSession.setMaxIdleTimeout(86400000L);
-        System.out.println("🟢 Agent connected: " + session.getId());
-
-        // Connect to VoiceStreamAI
-        try {
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            // Set write timeout to 5 minutes (300000ms) for slow networks
-            container.setDefaultMaxSessionIdleTimeout(86400000L);
-            container.setAsyncSendTimeout(300000L);
-
-            Session voiceSession = container.connectToServer(
-                    new VoiceStreamAiClientEndpoint(this),
-                    URI.create("ws://localhost:8765"));
-
-            // Set VoiceStreamAI session timeout to 24 hours as well
-            voiceSession.setMaxIdleTimeout(86400000L);
-        } catch (Exception e) {
-            System.err.println("❌ Failed to connect to VoiceStreamAI: " + e.getMessage());
-            try {
-                session.close(new CloseReason(
-                        CloseReason.CloseCodes.CANNOT_ACCEPT,
-                        "Backend service unavailable"));
-            } catch (IOException ignored) {
-            }
-        }
+public class AgentAudioEndpoint extends BinaryWebSocketHandler {
+
+    // 24 hours - only disconnect when user stops manually
+    private static final long IDLE_TIMEOUT_MS = 86400000L;
+    private static final String DEFAULT_CAMPAIGN = "default";
+
+    @Autowired
+    private ScriptComplianceService scriptComplianceService;
+
+    @Autowired
+    private SupervisorEndpoint supervisorEndpoint;
+
+    @Value("${voicestream.asr.url:ws://localhost:8765}")
+    private String asrUrl;
+
+    @Value("${voicestream.ws.max-binary-message-size:65536}")
+    private int maxBinaryMessageSize;
+
+    @Value("${voicestream.ws.max-text-message-size:65536}")
+    private int maxTextMessageSize;
+
+    @Value("${voicestream.ws.agent.send-time-limit-ms:5000}")
+    private int agentSendTimeLimit;
+
+    @Value("${voicestream.ws.agent.buffer-size-limit:524288}")
+    private int agentBufferSizeLimit;
+
+    @Value("${voicestream.ws.agent.overflow-strategy:DROP}")
+    private OverflowStrategy agentOverflowStrategy;
+
+    @Value("${voicestream.ws.asr.send-time-limit-ms:5000}")
+    private int asrSendTimeLimit;
+
+    // Audio queued per call while VoiceStreamAI lags; the oldest is dropped beyond this
+    @Value("${voicestream.ws.asr.buffer-size-limit:262144}")
+    private int asrBufferSizeLimit;
+
+    private final Map<String, AgentCall> calls = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "voicestream-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+    // At most one task per call sends its audio upstream
+    private final AtomicInteger asrSenderIds = new AtomicInteger();
+    private final ExecutorService asrSenders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "voicestream-send-" + asrSenderIds.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private StandardWebSocketClient voiceStreamClient;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        session.setBinaryMessageSizeLimit(maxBinaryMessageSize);
+        session.setTextMessageSizeLimit(maxTextMessageSize);
+        setIdleTimeout(session);
+
+        AgentCall call = new AgentCall(session.getId(), campaignOf(session), new BufferedSender(
+                "agent " + session.getId(), session, agentSendTimeLimit, agentBufferSizeLimit, agentOverflowStrategy),
+                asrBufferSizeLimit, asrSenders);
+        calls.put(call.getId(), call);
+        scriptComplianceService.startCall(call.getId());
+        System.out.println("🟢 Agent connected: " + session.getId() + " (campaign: " + call.getCampaign() + ")");
+
+        connectVoiceStream(call, true);
     }
 
-    @OnMessage
-    public void onBinary(ByteBuffer buffer) {
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        AgentCall call = calls.get(session.getId());
+        if (call == null) {
+            return;
+        }
+
+        ByteBuffer buffer = message.getPayload().order(ByteOrder.LITTLE_ENDIAN);
 
         // Validate header
         if (buffer.remaining() < 12) {
@@ -82,136 +137,184 @@ public class AgentAudioEndpoint {
         byte[] audioData = new byte[expectedBytes];
         buffer.get(audioData);
 
-        // Forward to VoiceStreamAI with synchronized async (prevents both timeout AND
-        // BINARY_FULL_WRITING)
-        if (voiceStreamSession != null && voiceStreamSession.isOpen()) {
-            synchronized (voiceStreamSession) {
-                try {
-                    // Use AsyncRemote with 5-minute timeout (prevents 20s timeout)
-                    // But synchronized to prevent concurrent writes (prevents BINARY_FULL_WRITING
-                    // error)
-                    voiceStreamSession.getAsyncRemote().sendBinary(ByteBuffer.wrap(audioData));
-                } catch (Exception e) {
-                    // Log only if not a normal close
-                    if (e.getMessage() != null && !e.getMessage().contains("closed")
-                            && !e.getMessage().contains("BINARY_FULL_WRITING")) {
-                        System.err.println("❌ Failed to send audio: " + e.getMessage());
-                    }
-                }
-            }
-        }
+        // Queue for VoiceStreamAI: a sender task does the writing, so a lagging
+        // upstream costs the oldest audio (reported), never this read thread
+        call.getAudio().offer(audioData);
     }
 
-    @OnClose
-    public void onClose(Session session, CloseReason reason) {
-        System.out.println("🔴 Agent disconnected: " + reason);
-        closeVoiceStream();
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        System.out.println("🔴 Agent disconnected: " + status);
+        endCall(session);
     }
 
-    @OnError
-    public void onError(Session session, Throwable error) {
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable error) {
         System.err.println("⚠️ WebSocket error: " + error.getMessage());
-        closeVoiceStream();
+        endCall(session);
     }
 
-    /* Called by VoiceStreamAiClientEndpoint */
-    void setVoiceStreamSession(Session session) {
-        this.voiceStreamSession = session;
+    @PreDestroy
+    public void shutdown() {
+        reconnectScheduler.shutdownNow();
+        asrSenders.shutdownNow();
+    }
 
-        // Set 24-hour idle timeout
-        this.voiceStreamSession.setMaxIdleTimeout(86400000L);
+    /* Called by VoiceStreamAiClientEndpoint */
+    void setVoiceStreamSession(AgentCall call, WebSocketSession session) {
+        session.setBinaryMessageSizeLimit(maxBinaryMessageSize);
+        session.setTextMessageSizeLimit(maxTextMessageSize);
+        setIdleTimeout(session);
 
-        // Set async send timeout to 5 minutes (300000ms) - prevents 20-second write
-        // timeout
-        this.voiceStreamSession.getAsyncRemote().setSendTimeout(300000L);
+        // Only the call's audio task sends, so the sender's own buffer stays small
+        BufferedSender voiceStream = new BufferedSender("VoiceStreamAI " + call.getId(), session,
+                asrSendTimeLimit, asrBufferSizeLimit, OverflowStrategy.DROP);
+        call.setVoiceStream(voiceStream);
+        // The agent left while we were connecting: endCall may have missed this session
+        if (call.isClosed()) {
+            System.out.println("🔴 Call " + call.getId() + " ended during VoiceStreamAI connect, closing upstream");
+            call.setVoiceStream(null);
+            voiceStream.close(CloseStatus.NORMAL);
+            return;
+        }
+        // Send audio queued while (re)connecting
+        call.getAudio().resume();
 
-        System.out.println("📞 VoiceStreamAI connected (timeout: 24h, write: 5min)");
+        System.out.println("📞 VoiceStreamAI connected (timeout: 24h, send limit: " + asrSendTimeLimit + "ms, buffer: "
+                + asrBufferSizeLimit + " bytes)");
     }
 
-    /**
-     * Get ScriptComplianceService from Spring context
-     * Required because @ServerEndpoint creates instances outside Spring's control
-     */
-    private ScriptComplianceService getComplianceService() {
-        try {
-            return ApplicationContextProvider.getBean(ScriptComplianceService.class);
-        } catch (Exception e) {
-            System.err.println("⚠️ Failed to get ScriptComplianceService: " + e.getMessage());
-            return null;
+    void handleTranscript(AgentCall call, String payload) {
+        // Late message from an upstream that is being closed with the call
+        if (call.isClosed()) {
+            return;
+        }
+        TranscriptAssembler.Update update = call.getTranscriptAssembler().accept(payload);
+        if (update == null) {
+            return;
+        }
+        if (update.isFinal()) {
+            System.out.println("📝 Transcript: " + update.text());
         }
-    }
 
-    void handleTranscript(String transcript) {
-        System.out.println("📝 Transcript: " + transcript);
-
-        // Send transcript back to agent immediately
-        if (clientSession != null && clientSession.isOpen()) {
-            try {
-                // Send as JSON
-                JSONObject json = new JSONObject();
-                json.put("type", "transcript");
-                json.put("data", transcript);
-                clientSession.getAsyncRemote().sendText(json.toString());
-            } catch (Exception e) {
-                System.err.println("❌ Failed to send transcript: " + e.getMessage());
-            }
+        // Send transcript back to agent immediately, interim hypotheses included
+        JSONObject transcript = new JSONObject();
+        transcript.put("text", update.text());
+        transcript.put("final", update.isFinal());
+        sendToAgent(call, "transcript", transcript);
+
+        // Dashboards and analysis only see each stable word once
+        String stableText = update.stableText();
+        if (stableText.isEmpty()) {
+            return;
         }
+        supervisorEndpoint.publishTranscript(call, stableText);
 
-        // Trigger AI Analysis using manual bean retrieval
-        ScriptComplianceService scriptComplianceService = getComplianceService();
-        if (scriptComplianceService != null) {
-            scriptComplianceService.analyzeAsync(transcript, (analysisResult) -> {
-                if (clientSession != null && clientSession.isOpen()) {
-                    try {
-                        JSONObject json = new JSONObject();
-                        json.put("type", "compliance");
-                        json.put("data", new JSONObject(analysisResult));
-                        clientSession.getAsyncRemote().sendText(json.toString());
+        // Trigger AI Analysis
+        scriptComplianceService.analyzeAsync(call.getId(), stableText,
+                (analysisResult) -> {
+                    if (call.isClosed()) {
+                        return;
+                    }
+                    JSONObject result = new JSONObject(analysisResult);
+                    call.setLastSeverity(result.optString("severity", "NORMAL"));
+                    if (sendToAgent(call, "compliance", result)) {
                         System.out.println("✅ Sent compliance result to client");
-                    } catch (Exception e) {
-                        System.err.println("❌ Failed to send compliance result: " + e.getMessage());
                     }
-                }
-            });
-        }
+                    supervisorEndpoint.publishCompliance(call, result);
+                });
     }
 
-    void handleVoiceStreamClose(CloseReason reason) {
-        System.out.println("⚠️ VoiceStreamAI closed: " + reason);
+    void handleVoiceStreamClose(AgentCall call, CloseStatus status) {
+        System.out.println("⚠️ VoiceStreamAI closed: " + status);
+        call.setVoiceStream(null);
 
         // Auto-reconnect if client is still connected
-        if (clientSession != null && clientSession.isOpen()) {
+        if (!call.isClosed() && call.getClient().isOpen()) {
             System.out.println("🔄 Attempting to reconnect to VoiceStreamAI...");
-            try {
-                Thread.sleep(1000); // Wait 1 second before reconnecting
+            // Wait 1 second before reconnecting, off the container thread
+            reconnectScheduler.schedule(() -> connectVoiceStream(call, false), 1, TimeUnit.SECONDS);
+        }
+    }
+
+    void handleVoiceStreamError(AgentCall call, Throwable error) {
+        System.err.println("VoiceStreamAI error: " + error.getMessage());
+    }
 
-                WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-                container.setDefaultMaxSessionIdleTimeout(86400000L);
-                container.setAsyncSendTimeout(300000L);
+    private boolean sendToAgent(AgentCall call, String type, Object data) {
+        // Send as JSON
+        JSONObject json = new JSONObject();
+        json.put("type", type);
+        json.put("data", data);
+        return call.getClient().send(new TextMessage(json.toString()));
+    }
 
-                Session voiceSession = container.connectToServer(
-                        new VoiceStreamAiClientEndpoint(this),
-                        URI.create("ws://localhost:8765"));
+    private void connectVoiceStream(AgentCall call, boolean initial) {
+        if (call.isClosed()) {
+            return;
+        }
+        voiceStreamClient().execute(new VoiceStreamAiClientEndpoint(this, call), null, URI.create(asrUrl))
+                .whenComplete((session, error) -> {
+                    if (error == null) {
+                        if (!initial) {
+                            System.out.println("✅ Reconnected to VoiceStreamAI successfully");
+                        }
+                        return;
+                    }
+                    if (initial) {
+                        System.err.println("❌ Failed to connect to VoiceStreamAI: " + error.getMessage());
+                        call.getClient().close(CloseStatus.NOT_ACCEPTABLE.withReason("Backend service unavailable"));
+                    } else {
+                        System.err.println("❌ Reconnection failed: " + error.getMessage());
+                    }
+                });
+    }
 
-                voiceSession.setMaxIdleTimeout(86400000L);
-                System.out.println("✅ Reconnected to VoiceStreamAI successfully");
-            } catch (Exception e) {
-                System.err.println("❌ Reconnection failed: " + e.getMessage());
-            }
+    private synchronized StandardWebSocketClient voiceStreamClient() {
+        if (voiceStreamClient == null) {
+            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            container.setDefaultMaxSessionIdleTimeout(IDLE_TIMEOUT_MS);
+            container.setDefaultMaxBinaryMessageBufferSize(maxBinaryMessageSize);
+            container.setDefaultMaxTextMessageBufferSize(maxTextMessageSize);
+            voiceStreamClient = new StandardWebSocketClient(container);
         }
+        return voiceStreamClient;
     }
 
-    void handleVoiceStreamError(Throwable error) {
-        System.err.println("VoiceStreamAI error: " + error.getMessage());
+    private void endCall(WebSocketSession session) {
+        AgentCall call = calls.remove(session.getId());
+        if (call == null) {
+            return;
+        }
+        call.markClosed();
+        call.getAudio().close();
+        BufferedSender voiceStream = call.getVoiceStream();
+        if (voiceStream != null) {
+            voiceStream.close(CloseStatus.NORMAL);
+        }
+        call.setVoiceStream(null);
+        scriptComplianceService.endCall(call.getId());
+        supervisorEndpoint.publishCallEnded(call);
+    }
+
+    /** Campaign from the agent's connection URL ({@code ?campaign=...}), for supervisor filtering */
+    private static String campaignOf(WebSocketSession session) {
+        if (session.getUri() == null) {
+            return DEFAULT_CAMPAIGN;
+        }
+        String campaign = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams()
+                .getFirst("campaign");
+        return campaign == null || campaign.isBlank()
+                ? DEFAULT_CAMPAIGN
+                : UriUtils.decode(campaign, StandardCharsets.UTF_8).trim();
     }
 
-    private void closeVoiceStream() {
-        if (voiceStreamSession != null && voiceStreamSession.isOpen()) {
-            try {
-                voiceStreamSession.close();
-            } catch (IOException ignored) {
+    private static void setIdleTimeout(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session jsrSession = nativeSession.getNativeSession(Session.class);
+            if (jsrSession != null) {
+                jsrSession.setMaxIdleTimeout(IDLE_TIMEOUT_MS);
             }
         }
-        voiceStreamSession = null;
     }
 }
@@ -0,0 +1,71 @@
+package com.voicestreamai.sst.ws;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Per-agent connection state: the buffered sender back to the Chrome
+ * extension and the one to the VoiceStreamAI upstream with its audio queue,
+ * the call's transcript assembler, plus what supervisor dashboards filter on
+ */
+class AgentCall {
+
+    private final String id;
+    private final String campaign;
+    private final BufferedSender client;
+    private final TranscriptAssembler transcriptAssembler = new TranscriptAssembler();
+    private final AudioForwarder audio;
+    private volatile BufferedSender voiceStream;
+    private volatile String lastSeverity = "NORMAL";
+    private volatile boolean closed;
+
+    AgentCall(String id, String campaign, BufferedSender client, int audioBufferSize, Executor audioSender) {
+        this.id = id;
+        this.campaign = campaign;
+        this.client = client;
+        this.audio = new AudioForwarder("VoiceStreamAI " + id, this::getVoiceStream, audioBufferSize, audioSender);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getCampaign() {
+        return campaign;
+    }
+
+    BufferedSender getClient() {
+        return client;
+    }
+
+    TranscriptAssembler getTranscriptAssembler() {
+        return transcriptAssembler;
+    }
+
+    AudioForwarder getAudio() {
+        return audio;
+    }
+
+    BufferedSender getVoiceStream() {
+        return voiceStream;
+    }
+
+    void setVoiceStream(BufferedSender voiceStream) {
+        this.voiceStream = voiceStream;
+    }
+
+    String getLastSeverity() {
+        return lastSeverity;
+    }
+
+    void setLastSeverity(String lastSeverity) {
+        this.lastSeverity = lastSeverity;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void markClosed() {
+        this.closed = true;
+    }
+}
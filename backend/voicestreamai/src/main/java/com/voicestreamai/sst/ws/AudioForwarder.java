@@ -0,0 +1,121 @@
+package com.voicestreamai.sst.ws;
+
+import org.springframework.web.socket.BinaryMessage;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Agent audio on its way to VoiceStreamAI.
+ * The agent's read thread only queues frames; at most one sender task at a
+ * time writes them upstream, so a slow ASR peer never stalls the agent's
+ * socket. The queue is bounded in bytes and drops the oldest audio when
+ * full (reported periodically). Frames queued while the upstream is
+ * reconnecting are sent once it is back.
+ */
+class AudioForwarder {
+
+    private static final long DROP_REPORT_INTERVAL_MS = 5000;
+
+    private final String name;
+    private final Supplier<BufferedSender> upstream;
+    private final int bufferSizeLimit;
+    private final Executor executor;
+
+    // Guarded by this
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+    private int queuedBytes;
+    private long droppedBytes;
+    private long reportedDroppedBytes;
+    private long lastDropReport;
+    private boolean draining;
+    private boolean closed;
+
+    AudioForwarder(String name, Supplier<BufferedSender> upstream, int bufferSizeLimit, Executor executor) {
+        this.name = name;
+        this.upstream = upstream;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.executor = executor;
+    }
+
+    /** Queue a frame without blocking */
+    void offer(byte[] frame) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            queue.add(frame);
+            queuedBytes += frame.length;
+            while (queuedBytes > bufferSizeLimit && queue.size() > 1) {
+                byte[] oldest = queue.poll();
+                queuedBytes -= oldest.length;
+                droppedBytes += oldest.length;
+            }
+            reportDrops();
+        }
+        resume();
+    }
+
+    /** Start a sender task if frames are waiting and none is active, e.g. after a reconnect */
+    void resume() {
+        synchronized (this) {
+            if (draining || closed || queue.isEmpty() || !isConnected(upstream.get())) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            BufferedSender sender = upstream.get();
+            byte[] frame;
+            synchronized (this) {
+                frame = closed || !isConnected(sender) ? null : queue.poll();
+                if (frame == null) {
+                    draining = false;
+                    return;
+                }
+                queuedBytes -= frame.length;
+            }
+
+            // Blocks for at most the send-time limit; the sender closes a stalled upstream
+            if (!sender.send(new BinaryMessage(frame))) {
+                // Upstream gone: keep the rest for the reconnected session
+                synchronized (this) {
+                    droppedBytes += frame.length;
+                    draining = false;
+                }
+                return;
+            }
+        }
+    }
+
+    private static boolean isConnected(BufferedSender sender) {
+        return sender != null && sender.isOpen();
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (droppedBytes > reportedDroppedBytes && now - lastDropReport >= DROP_REPORT_INTERVAL_MS) {
+            System.err.println("⚠️ " + name + " slow: dropped " + (droppedBytes - reportedDroppedBytes)
+                    + " bytes of oldest audio (" + droppedBytes + " total, " + queuedBytes + " queued)");
+            reportedDroppedBytes = droppedBytes;
+            lastDropReport = now;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.voicestreamai.sst.ws;
+
+import jakarta.websocket.Session;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound side of a WebSocket peer.
+ * Sends go through a ConcurrentWebSocketSessionDecorator with explicit
+ * send-time and buffer-size limits. The caller that finds no send in progress
+ * writes to the socket itself and blocks for at most the send-time limit;
+ * callers arriving meanwhile only buffer, and the buffer and time limits
+ * apply to them. Bytes are counted in and out of the buffer so that data
+ * dropped by the DROP overflow policy is reported instead of lost silently.
+ */
+class BufferedSender {
+
+    private static final long DROP_REPORT_INTERVAL_MS = 5000;
+    // Tomcat's timeout for a blocking write, 20s by default
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final String name;
+    private final ConcurrentWebSocketSessionDecorator decorator;
+    private final AtomicLong bytesQueued = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile long reportedDroppedBytes;
+    private volatile long lastDropReport;
+
+    BufferedSender(String name, WebSocketSession session, int sendTimeLimitMs, int bufferSizeLimit,
+            OverflowStrategy overflowStrategy) {
+        this.name = name;
+        if (sendTimeLimitMs > 0 && session instanceof NativeWebSocketSession nativeSession) {
+            Session jsrSession = nativeSession.getNativeSession(Session.class);
+            if (jsrSession != null) {
+                jsrSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT, (long) sendTimeLimitMs);
+            }
+        }
+        this.decorator = new ConcurrentWebSocketSessionDecorator(new CountingSession(session),
+                sendTimeLimitMs, bufferSizeLimit, overflowStrategy);
+        this.decorator.setMessageCallback(message -> bytesQueued.addAndGet(message.getPayloadLength()));
+    }
+
+    /**
+     * Queue a message for sending. Returns false if the peer is gone or was
+     * closed for exceeding its limits.
+     */
+    boolean send(WebSocketMessage<?> message) {
+        if (!decorator.isOpen()) {
+            return false;
+        }
+        try {
+            decorator.sendMessage(message);
+            reportDrops();
+            return true;
+        } catch (SessionLimitExceededException e) {
+            // Send-time limit hit (or TERMINATE policy): the peer cannot keep up
+            System.err.println("❌ " + name + " too slow, closing: " + e.getMessage());
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        } catch (IOException e) {
+            // Includes a blocking write that timed out: the connection is unusable
+            System.err.println("❌ Failed to send to " + name + ", closing: " + e.getMessage());
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        } catch (IllegalStateException e) {
+            System.err.println("❌ Failed to send to " + name + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    WebSocketSession getSession() {
+        return decorator;
+    }
+
+    boolean isOpen() {
+        return decorator.isOpen();
+    }
+
+    long getDroppedBytes() {
+        return Math.max(0, bytesQueued.get() - bytesSent.get() - decorator.getBufferSize());
+    }
+
+    void close(CloseStatus status) {
+        try {
+            decorator.close(status);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (now - lastDropReport < DROP_REPORT_INTERVAL_MS) {
+            return;
+        }
+        long dropped = getDroppedBytes();
+        if (dropped > reportedDroppedBytes) {
+            System.err.println("⚠️ " + name + " slow: dropped " + (dropped - reportedDroppedBytes)
+                    + " bytes of oldest data (" + dropped + " total, " + decorator.getBufferSize() + " buffered)");
+            reportedDroppedBytes = dropped;
+        }
+        lastDropReport = now;
+    }
+
+    /** Counts bytes that actually reached the underlying session */
+    private final class CountingSession extends WebSocketSessionDecorator {
+
+        CountingSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            bytesSent.addAndGet(message.getPayloadLength());
+        }
+    }
+}
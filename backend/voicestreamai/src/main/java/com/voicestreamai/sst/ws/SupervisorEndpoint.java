@@ -0,0 +1,232 @@
+package com.voicestreamai.sst.ws;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket endpoint for supervisor dashboards
+ * Streams transcript and compliance events of all active agent calls.
+ * Query parameters: {@code campaign} (repeatable or comma-separated) and
+ * {@code min_severity} (NORMAL, ALERT, RISK or CRITICAL).
+ * Agent threads only hand events to a fan-out thread; serialization and
+ * sending happen off the agent path, so a slow dashboard never delays an
+ * agent's own alerts. Each dashboard has at most one sender thread, blocked
+ * for at most the send-time limit before that dashboard is closed.
+ * Handshakes are checked by {@link SupervisorHandshakeInterceptor}.
+ */
+@Component
+public class SupervisorEndpoint extends TextWebSocketHandler {
+
+    @Value("${voicestream.supervisor.queue-size:256}")
+    private int queueSize;
+
+    @Value("${voicestream.supervisor.send-time-limit-ms:5000}")
+    private int sendTimeLimit;
+
+    @Value("${voicestream.supervisor.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${voicestream.supervisor.fanout-backlog:10000}")
+    private int fanoutBacklog;
+
+    private final Map<String, SupervisorSubscriber> subscribers = new ConcurrentHashMap<>();
+    // Latest compliance event per active call, replayed to new subscribers.
+    // Filled on the fan-out thread; entries of ended calls are removed directly.
+    private final Map<String, SupervisorEvent> latestCompliance = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedEvents = new AtomicLong();
+
+    private ThreadPoolExecutor fanout;
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        // Single thread keeps per-call event order; bounded so a burst cannot exhaust memory
+        fanout = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fanoutBacklog)), r -> {
+                    Thread t = new Thread(r, "supervisor-fanout");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        // Grows with the number of dashboards, so stalled ones cannot starve the rest
+        AtomicInteger senderIds = new AtomicInteger();
+        senders = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "supervisor-send-" + senderIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanout.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri()).build()
+                .getQueryParams();
+
+        Set<String> campaigns = new HashSet<>();
+        for (String value : params.getOrDefault("campaign", Collections.emptyList())) {
+            for (String campaign : UriUtils.decode(value, StandardCharsets.UTF_8).split(",")) {
+                if (!campaign.isBlank()) {
+                    campaigns.add(campaign.trim());
+                }
+            }
+        }
+
+        String minSeverity = params.getFirst("min_severity") != null
+                ? params.getFirst("min_severity").toUpperCase(Locale.ROOT)
+                : "NORMAL";
+        if (!SupervisorSubscriber.SEVERITIES.contains(minSeverity)) {
+            try {
+                session.close(CloseStatus.BAD_DATA.withReason("Unknown min_severity: " + minSeverity));
+            } catch (Exception ignored) {
+            }
+            return;
+        }
+
+        BufferedSender sender = new BufferedSender("Supervisor " + session.getId(), session, sendTimeLimit,
+                bufferSizeLimit, OverflowStrategy.DROP);
+        SupervisorSubscriber subscriber = new SupervisorSubscriber(sender, campaigns, minSeverity, queueSize);
+        System.out.println("🟢 Supervisor connected: " + session.getId()
+                + " (campaigns: " + (campaigns.isEmpty() ? "all" : campaigns) + ", min severity: " + minSeverity + ")");
+
+        // Register on the fan-out thread so the snapshot and live events stay in order
+        try {
+            fanout.execute(() -> {
+                subscribers.put(subscriber.getId(), subscriber);
+                for (SupervisorEvent event : latestCompliance.values()) {
+                    deliver(subscriber, event);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            subscribers.put(subscriber.getId(), subscriber);
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        // Read-only channel
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        SupervisorSubscriber subscriber = subscribers.remove(session.getId());
+        if (subscriber != null) {
+            subscriber.close(status);
+            System.out.println("🔴 Supervisor disconnected: " + status);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable error) {
+        System.err.println("⚠️ Supervisor WebSocket error: " + error.getMessage());
+        SupervisorSubscriber subscriber = subscribers.remove(session.getId());
+        if (subscriber != null) {
+            subscriber.close(CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    /* Called by AgentAudioEndpoint; never blocks */
+    void publishTranscript(AgentCall call, String transcript) {
+        publish(SupervisorEvent.TRANSCRIPT, call, call.getLastSeverity(), transcript);
+    }
+
+    void publishCompliance(AgentCall call, JSONObject result) {
+        publish(SupervisorEvent.COMPLIANCE, call, result.optString("severity", "NORMAL"), result);
+    }
+
+    void publishCallEnded(AgentCall call) {
+        // Even if the event itself is dropped, the call must not be replayed as live
+        latestCompliance.remove(call.getId());
+        publish(SupervisorEvent.CALL_ENDED, call, call.getLastSeverity(), JSONObject.NULL);
+    }
+
+    private void publish(String type, AgentCall call, String severity, Object data) {
+        long timestamp = System.currentTimeMillis();
+        try {
+            fanout.execute(() -> fanOut(type, call, severity, data, timestamp));
+        } catch (RejectedExecutionException e) {
+            // Backlog full: dashboards lose this event, the agent path does not wait
+            if (rejectedEvents.incrementAndGet() % 1000 == 1) {
+                System.err.println("⚠️ Supervisor fan-out backlog full, dropped " + rejectedEvents.get() + " events");
+            }
+        }
+    }
+
+    private void fanOut(String type, AgentCall call, String severity, Object data, long timestamp) {
+        // A Gemini result or transcript finishing after the call ended would put it back on the wall
+        if (call.isClosed() && !SupervisorEvent.CALL_ENDED.equals(type)) {
+            return;
+        }
+
+        // Serialize once for all subscribers
+        JSONObject json = new JSONObject();
+        json.put("type", type);
+        json.put("call_id", call.getId());
+        json.put("campaign", call.getCampaign());
+        json.put("severity", severity);
+        json.put("timestamp", timestamp);
+        json.put("data", data);
+        SupervisorEvent event = new SupervisorEvent(type, call.getId(), call.getCampaign(), severity,
+                new TextMessage(json.toString()));
+
+        switch (type) {
+            case SupervisorEvent.COMPLIANCE -> {
+                latestCompliance.put(call.getId(), event);
+                // The call may have ended since the check above
+                if (call.isClosed()) {
+                    latestCompliance.remove(call.getId());
+                    return;
+                }
+            }
+            case SupervisorEvent.CALL_ENDED -> latestCompliance.remove(call.getId());
+            default -> {
+            }
+        }
+
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (SupervisorSubscriber subscriber : List.copyOf(subscribers.values())) {
+            deliver(subscriber, event);
+        }
+    }
+
+    private void deliver(SupervisorSubscriber subscriber, SupervisorEvent event) {
+        if (subscriber.accepts(event) && subscriber.offer(event)) {
+            senders.execute(subscriber::drain);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.voicestreamai.sst.ws;
+
+import org.springframework.web.socket.TextMessage;
+
+/**
+ * One call event for supervisor dashboards, serialized once and shared by
+ * every subscriber it is fanned out to
+ */
+record SupervisorEvent(String type, String callId, String campaign, String severity, TextMessage message) {
+
+    static final String TRANSCRIPT = "transcript";
+    static final String COMPLIANCE = "compliance";
+    static final String CALL_ENDED = "call_ended";
+}
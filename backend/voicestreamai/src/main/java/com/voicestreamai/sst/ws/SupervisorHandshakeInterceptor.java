@@ -0,0 +1,67 @@
+package com.voicestreamai.sst.ws;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Admits supervisor dashboards that present the shared token, as
+ * {@code ?token=...} (browsers cannot set WebSocket headers) or as an
+ * {@code Authorization: Bearer} header. With no token configured every
+ * handshake is refused: the channel carries live transcripts.
+ */
+@Component
+public class SupervisorHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final String BEARER = "Bearer ";
+
+    @Value("${voicestream.supervisor.token:}")
+    private String token;
+
+    @PostConstruct
+    public void init() {
+        if (token.isBlank()) {
+            System.err.println("⚠️ voicestream.supervisor.token is not set, supervisor dashboards will be refused");
+        }
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String presented = presentedToken(request);
+        // Constant-time comparison
+        if (!token.isBlank() && presented != null && MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+        System.err.println("❌ Supervisor handshake refused from " + request.getRemoteAddress());
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private static String presentedToken(ServerHttpRequest request) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER)) {
+            return authorization.substring(BEARER.length()).trim();
+        }
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+        return token == null ? null : UriUtils.decode(token, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package com.voicestreamai.sst.ws;
+
+import org.json.JSONObject;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One supervisor dashboard connection.
+ * Events pass its campaign/severity filter into a bounded queue that is drained
+ * by at most one sender task at a time, through a {@link BufferedSender}: a
+ * dashboard that stalls a send beyond the send-time limit is closed by that
+ * task. When the dashboard falls behind, a newer compliance result replaces
+ * the queued one for the same call (conflation) and otherwise the oldest
+ * events are dropped; the dashboard is told how many it missed.
+ */
+class SupervisorSubscriber {
+
+    // Lowest to highest
+    static final List<String> SEVERITIES = List.of("NORMAL", "ALERT", "RISK", "CRITICAL");
+
+    private final BufferedSender sender;
+    private final Set<String> campaigns;
+    private final int minSeverity;
+    private final int queueLimit;
+
+    // Guarded by this
+    private final ArrayDeque<SupervisorEvent> queue = new ArrayDeque<>();
+    private int dropped;
+    private boolean draining;
+    private boolean closed;
+
+    /**
+     * @param campaigns   campaigns to receive, empty for all
+     * @param minSeverity lowest severity to receive, one of {@link #SEVERITIES}
+     */
+    SupervisorSubscriber(BufferedSender sender, Set<String> campaigns, String minSeverity, int queueLimit) {
+        this.sender = sender;
+        this.campaigns = campaigns;
+        this.minSeverity = SEVERITIES.indexOf(minSeverity);
+        this.queueLimit = queueLimit;
+    }
+
+    String getId() {
+        return sender.getSession().getId();
+    }
+
+    boolean accepts(SupervisorEvent event) {
+        if (!campaigns.isEmpty() && !campaigns.contains(event.campaign())) {
+            return false;
+        }
+        // Dashboards always need to know when a call tile goes away
+        return SupervisorEvent.CALL_ENDED.equals(event.type())
+                || SEVERITIES.indexOf(event.severity()) >= minSeverity;
+    }
+
+    /**
+     * Queue an event without blocking. Returns true if the caller must
+     * schedule {@link #drain()} because no sender task is active.
+     */
+    synchronized boolean offer(SupervisorEvent event) {
+        if (closed) {
+            return false;
+        }
+        if (SupervisorEvent.COMPLIANCE.equals(event.type())) {
+            // Only the latest score of a call matters
+            queue.removeIf(queued -> SupervisorEvent.COMPLIANCE.equals(queued.type())
+                    && queued.callId().equals(event.callId()));
+        }
+        if (queue.size() >= queueLimit) {
+            queue.poll();
+            dropped++;
+        }
+        queue.add(event);
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /** Send queued events until the queue is empty; run on a sender thread */
+    void drain() {
+        while (true) {
+            TextMessage message;
+            synchronized (this) {
+                if (dropped > 0) {
+                    message = droppedNotice(dropped);
+                    dropped = 0;
+                } else {
+                    SupervisorEvent next = queue.poll();
+                    if (next == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                    message = next.message();
+                }
+            }
+
+            // Blocks for at most the send-time limit; the sender closes a stalled dashboard
+            if (!sender.send(message)) {
+                synchronized (this) {
+                    closed = true;
+                    draining = false;
+                    queue.clear();
+                }
+                return;
+            }
+        }
+    }
+
+    void close(CloseStatus status) {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+        sender.close(status);
+    }
+
+    private static TextMessage droppedNotice(int count) {
+        JSONObject json = new JSONObject();
+        json.put("type", "dropped");
+        json.put("count", count);
+        return new TextMessage(json.toString());
+    }
+}
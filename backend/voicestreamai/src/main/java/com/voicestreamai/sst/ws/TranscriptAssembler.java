@@ -0,0 +1,171 @@
+package com.voicestreamai.sst.ws;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-call consolidation of streaming ASR output.
+ * Interim hypotheses are shown live but only the words two consecutive
+ * hypotheses agree on (longest common prefix) become stable. New words are
+ * found by comparing each hypothesis with the words already committed for the
+ * utterance, so a revision ("I will call the" becoming "I'll call the police")
+ * still yields the words after the committed ones. A final segment commits
+ * whatever of it is not yet committed, after removing any prefix that repeats
+ * the end of the already committed text (suffix/prefix overlap).
+ * Downstream analysis only ever sees each stable word once.
+ */
+class TranscriptAssembler {
+
+    /**
+     * @param text       what to display now (the full hypothesis or final segment)
+     * @param isFinal    false for an interim hypothesis that may still change
+     * @param stableText words newly committed by this message, empty if none
+     */
+    record Update(String text, boolean isFinal, String stableText) {
+    }
+
+    // Shorter overlaps are too likely to be a genuine repeat ("yes ... yes")
+    private static final int MIN_OVERLAP_WORDS = 2;
+    private static final int TAIL_WORDS = 32;
+
+    // Comparison keys of the last committed words
+    private final List<String> committedTail = new ArrayList<>();
+    private List<String> hypothesis = List.of();
+    // Comparison keys of the words committed for the current utterance
+    private final List<String> utteranceWords = new ArrayList<>();
+
+    /**
+     * Consume one upstream message: VoiceStreamAI JSON ({@code text}), Vosk
+     * style {@code partial}, an {@code is_final}/{@code final} flag or
+     * {@code type} of partial/interim/final, or plain text. Messages without a
+     * flag are final. Returns null if there is nothing to show.
+     */
+    synchronized Update accept(String payload) {
+        String text;
+        boolean isFinal = true;
+        try {
+            JSONObject json = new JSONObject(payload);
+            if (json.has("partial")) {
+                text = json.optString("partial", "");
+                isFinal = false;
+            } else {
+                text = json.optString("text", "");
+                if (json.has("is_final")) {
+                    isFinal = json.optBoolean("is_final", true);
+                } else if (json.has("final")) {
+                    isFinal = json.optBoolean("final", true);
+                } else if (json.has("type")) {
+                    String type = json.optString("type");
+                    isFinal = !"partial".equalsIgnoreCase(type) && !"interim".equalsIgnoreCase(type);
+                }
+            }
+        } catch (JSONException e) {
+            text = payload;
+        }
+
+        text = text.trim();
+        List<String> words = text.isEmpty() ? List.of() : Arrays.asList(text.split("\\s+"));
+        if (isFinal) {
+            return acceptFinal(text, words);
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        return acceptInterim(text, words);
+    }
+
+    private Update acceptInterim(String text, List<String> words) {
+        // Local agreement: a word is stable once two hypotheses in a row contain it
+        int agreed = commonPrefix(hypothesis, words);
+        hypothesis = words;
+
+        String stable = "";
+        int start = alignCommitted(words);
+        if (agreed > start) {
+            List<String> fresh = words.subList(start, agreed);
+            commit(fresh);
+            stable = String.join(" ", fresh);
+        }
+        return new Update(text, false, stable);
+    }
+
+    private Update acceptFinal(String text, List<String> words) {
+        // Skip what this utterance already committed and any resent overlap
+        int skip = Math.min(words.size(), Math.max(alignCommitted(words), overlap(committedTail, words)));
+        List<String> fresh = words.subList(skip, words.size());
+        commit(fresh);
+        hypothesis = List.of();
+        utteranceWords.clear();
+
+        if (words.isEmpty()) {
+            return null;
+        }
+        return new Update(text, true, String.join(" ", fresh));
+    }
+
+    /**
+     * Number of leading words of a hypothesis that the utterance already
+     * committed. Normally the committed words are a prefix; if the recognizer
+     * revised one, resume after the first place the hypothesis ends with the
+     * same last words as the committed text. Without such a match, fall back
+     * to the common prefix: repeating a word beats losing one.
+     */
+    private int alignCommitted(List<String> words) {
+        int prefix = commonPrefix(utteranceWords, words);
+        if (prefix == utteranceWords.size()) {
+            return prefix;
+        }
+        int tail = Math.min(MIN_OVERLAP_WORDS, utteranceWords.size());
+        List<String> committedEnd = utteranceWords.subList(utteranceWords.size() - tail, utteranceWords.size());
+        for (int end = Math.max(prefix + 1, tail); end <= words.size(); end++) {
+            if (commonPrefix(committedEnd, words.subList(end - tail, end)) == tail) {
+                return end;
+            }
+        }
+        return prefix;
+    }
+
+    private void commit(List<String> words) {
+        for (String word : words) {
+            committedTail.add(key(word));
+            utteranceWords.add(key(word));
+        }
+        if (committedTail.size() > TAIL_WORDS) {
+            committedTail.subList(0, committedTail.size() - TAIL_WORDS).clear();
+        }
+    }
+
+    private static int commonPrefix(List<String> a, List<String> b) {
+        int n = Math.min(a.size(), b.size());
+        int i = 0;
+        while (i < n && key(a.get(i)).equals(key(b.get(i)))) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Longest m such that the last m committed words equal the first m new words */
+    private static int overlap(List<String> tailKeys, List<String> words) {
+        for (int m = Math.min(tailKeys.size(), words.size()); m >= MIN_OVERLAP_WORDS; m--) {
+            int offset = tailKeys.size() - m;
+            boolean matches = true;
+            for (int i = 0; i < m && matches; i++) {
+                matches = tailKeys.get(offset + i).equals(key(words.get(i)));
+            }
+            if (matches) {
+                return m;
+            }
+        }
+        return 0;
+    }
+
+    /** Case and punctuation differ between hypotheses of the same word */
+    private static String key(String word) {
+        return word.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}']", "");
+    }
+}
@@ -1,37 +1,41 @@
 package com.voicestreamai.sst.ws;
 
-import jakarta.websocket.*;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 /**
- * WebSocket client for connecting to VoiceStreamAI server
+ * WebSocket client handler for one agent's connection to the VoiceStreamAI server
  */
-@ClientEndpoint
-public class VoiceStreamAiClientEndpoint {
+public class VoiceStreamAiClientEndpoint extends TextWebSocketHandler {
 
     private final AgentAudioEndpoint parent;
+    private final AgentCall call;
 
-    public VoiceStreamAiClientEndpoint(AgentAudioEndpoint parent) {
+    VoiceStreamAiClientEndpoint(AgentAudioEndpoint parent, AgentCall call) {
         this.parent = parent;
+        this.call = call;
     }
 
-    @OnOpen
-    public void onOpen(Session session) {
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
         System.out.println("Connected to VoiceStreamAI");
-        parent.setVoiceStreamSession(session);
+        parent.setVoiceStreamSession(call, session);
     }
 
-    @OnMessage
-    public void onText(String transcript) {
-        parent.handleTranscript(transcript);
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        parent.handleTranscript(call, message.getPayload());
     }
 
-    @OnClose
-    public void onClose(Session session, CloseReason reason) {
-        parent.handleVoiceStreamClose(reason);
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        parent.handleVoiceStreamClose(call, status);
     }
 
-    @OnError
-    public void onError(Session session, Throwable error) {
-        parent.handleVoiceStreamError(error);
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable error) {
+        parent.handleVoiceStreamError(call, error);
     }
 }
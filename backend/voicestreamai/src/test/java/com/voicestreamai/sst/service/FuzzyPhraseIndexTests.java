@@ -0,0 +1,74 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class FuzzyPhraseIndexTests {
+
+	private final FuzzyPhraseIndex<String> index = new FuzzyPhraseIndex<>(0.8, 32);
+
+	FuzzyPhraseIndexTests() {
+		index.add("welcome to zepto how may i assist you today", "greeting");
+		index.add("just to summarize", "summary");
+		index.add("dob", "authentication");
+		index.add("i understand", "empathy");
+		index.add("sorry for the inconvenience", "empathy");
+	}
+
+	@Test
+	void matchesExactPhraseWithFullConfidence() {
+		List<FuzzyPhraseIndex.Match<String>> matches = index.search(words("so just to summarize the refund"));
+
+		assertThat(matches).hasSize(1);
+		assertThat(matches.get(0).getTag()).isEqualTo("summary");
+		assertThat(matches.get(0).getConfidence()).isEqualTo(1.0);
+		assertThat(matches.get(0).getStartWord()).isEqualTo(1);
+		assertThat(matches.get(0).getEndWord()).isEqualTo(3);
+	}
+
+	@Test
+	void toleratesAsrSplitsAndMisspellings() {
+		List<FuzzyPhraseIndex.Match<String>> matches = index
+				.search(words("hello welcome to zip toe how may i a cyst you today"));
+
+		assertThat(matches).extracting(FuzzyPhraseIndex.Match::getTag).containsExactly("greeting");
+		assertThat(matches.get(0).getConfidence()).isBetween(0.8, 0.99);
+	}
+
+	@Test
+	void rejectsUnrelatedTextWithSimilarConsonants() {
+		assertThat(index.search(words("what is your registered mobile number"))).isEmpty();
+	}
+
+	@Test
+	void matchesShortPhrasesOnlyExactly() {
+		assertThat(index.search(words("your dob please"))).hasSize(1);
+		assertThat(index.search(words("your dab please"))).isEmpty();
+	}
+
+	@Test
+	void rejectsMatchesThatDropAPhraseWord() {
+		assertThat(index.search(words("i don't understand what you are saying"))).isEmpty();
+		assertThat(index.search(words("do you understand"))).isEmpty();
+
+		assertThat(index.search(words("yes i under stand"))).extracting(FuzzyPhraseIndex.Match::getStartWord)
+				.containsExactly(1);
+	}
+
+	@Test
+	void findsFuzzyRepeatAfterExactMatch() {
+		List<FuzzyPhraseIndex.Match<String>> matches = index
+				.search(words("sorry for the inconvenience again sorry for the inconvenince"));
+
+		assertThat(matches).extracting(FuzzyPhraseIndex.Match::getStartWord).containsExactly(0, 5);
+		assertThat(matches.get(1).getConfidence()).isBetween(0.8, 0.99);
+	}
+
+	private static List<String> words(String text) {
+		return Arrays.asList(text.split(" "));
+	}
+}
@@ -0,0 +1,165 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class GeminiCallGuardTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void opensAfterFailuresAndRejectsWithoutCalling() throws Exception {
+		GeminiCallGuard guard = guard(false, 50);
+		AtomicInteger calls = new AtomicInteger();
+		FaultyStub stub = new FaultyStub(calls, true, 0);
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> guard.call(stub, () -> false)).isInstanceOf(IOException.class);
+		}
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.OPEN);
+		assertThat(guard.isCallPermitted()).isFalse();
+
+		assertThatThrownBy(() -> guard.call(stub, () -> false))
+				.isInstanceOf(GeminiCallGuard.CallNotPermittedException.class);
+		assertThat(calls).hasValue(4);
+	}
+
+	@Test
+	void halfOpenProbeClosesCircuitOnSuccess() throws Exception {
+		GeminiCallGuard guard = guard(false, 50);
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> guard.call(new FaultyStub(new AtomicInteger(), true, 0), () -> false));
+		}
+
+		clock.addAndGet(10_000);
+		assertThat(guard.isCallPermitted()).isTrue();
+		assertThat(guard.call(() -> "{\"agent_tone\":\"NEUTRAL\"}", () -> false)).contains("NEUTRAL");
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.CLOSED);
+	}
+
+	@Test
+	void slowCallsCountAsFailures() throws Exception {
+		GeminiCallGuard guard = guard(false, 50);
+		// Slower than the 150ms slow-call threshold but within the 200ms timeout
+		for (int i = 0; i < 4; i++) {
+			assertThat(guard.call(new FaultyStub(new AtomicInteger(), false, 175), () -> false)).isEqualTo("{}");
+		}
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.OPEN);
+	}
+
+	@Test
+	void hedgesSlowAttemptAndReturnsFirstSuccess() throws Exception {
+		GeminiCallGuard guard = guard(true, 50);
+		AtomicInteger calls = new AtomicInteger();
+		AtomicInteger permits = new AtomicInteger();
+
+		long start = System.nanoTime();
+		String result = guard.call(() -> {
+			// First attempt hangs, the hedged one answers promptly
+			if (calls.incrementAndGet() == 1) {
+				Thread.sleep(5_000);
+			}
+			return "hedged";
+		}, () -> permits.incrementAndGet() > 0);
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		assertThat(result).isEqualTo("hedged");
+		assertThat(calls).hasValue(2);
+		assertThat(permits).hasValue(1);
+		assertThat(elapsedMs).isLessThan(300);
+	}
+
+	@Test
+	void doesNotHedgeWithoutPermit() {
+		GeminiCallGuard guard = guard(true, 50);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertThatThrownBy(() -> guard.call(new FaultyStub(calls, false, 1_000), () -> false))
+				.isInstanceOf(TimeoutException.class);
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void excludedExceptionsDoNotDiluteTheFailureRate() {
+		GeminiCallGuard guard = guard(e -> !(e instanceof QuotaExceeded));
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> guard.call(new FaultyStub(new AtomicInteger(), true, 0), () -> false));
+		}
+		for (int i = 0; i < 5; i++) {
+			assertThatThrownBy(() -> guard.call(QuotaExceeded::raise, () -> false)).isInstanceOf(QuotaExceeded.class);
+		}
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.CLOSED);
+
+		assertThatThrownBy(() -> guard.call(new FaultyStub(new AtomicInteger(), true, 0), () -> false));
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.OPEN);
+	}
+
+	@Test
+	void excludedExceptionDoesNotCloseHalfOpenCircuit() {
+		GeminiCallGuard guard = guard(e -> !(e instanceof QuotaExceeded));
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> guard.call(new FaultyStub(new AtomicInteger(), true, 0), () -> false));
+		}
+		clock.addAndGet(10_000);
+
+		assertThatThrownBy(() -> guard.call(QuotaExceeded::raise, () -> false)).isInstanceOf(QuotaExceeded.class);
+		assertThat(guard.getState()).isEqualTo(GeminiCallGuard.State.HALF_OPEN);
+		// The probe slot is free again for a call that can tell
+		assertThat(guard.isCallPermitted()).isTrue();
+	}
+
+	private GeminiCallGuard guard(boolean hedging, long minHedgeDelayMs) {
+		return new GeminiCallGuard(10, 4, 0.5, 150, 5_000, 200, hedging, minHedgeDelayMs, executor, clock::get,
+				e -> true);
+	}
+
+	private GeminiCallGuard guard(Predicate<Throwable> countsAsFailure) {
+		return new GeminiCallGuard(10, 4, 0.5, 150, 5_000, 200, false, 50, executor, clock::get, countsAsFailure);
+	}
+
+	/** Stand-in for a quota rejection, which the breaker must not count */
+	private static final class QuotaExceeded extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		static String raise() {
+			throw new QuotaExceeded();
+		}
+	}
+
+	/** Stand-in for the Gemini endpoint that fails or stalls on demand */
+	private record FaultyStub(AtomicInteger calls, boolean fail, long delayMs)
+			implements Callable<String> {
+
+		@Override
+		public String call() throws Exception {
+			calls.incrementAndGet();
+			if (delayMs > 0) {
+				Thread.sleep(delayMs);
+			}
+			if (fail) {
+				throw new IOException("injected fault");
+			}
+			return "{}";
+		}
+	}
+}
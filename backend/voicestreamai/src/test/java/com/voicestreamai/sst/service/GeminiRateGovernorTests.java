@@ -0,0 +1,155 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class GeminiRateGovernorTests {
+
+	private static final Function<String, Integer> TOKENS = text -> 10;
+
+	private final GeminiRateGovernor governor = new GeminiRateGovernor();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final List<String> analyzed = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void shutdown() {
+		release.countDown();
+		if (ReflectionTestUtils.getField(governor, "dispatcher") != null) {
+			governor.shutdown();
+		}
+	}
+
+	@Test
+	void tokenBucketRefillsContinuously() {
+		long start = 0;
+		GeminiRateGovernor.TokenBucket bucket = new GeminiRateGovernor.TokenBucket(60, start);
+
+		bucket.consume(60, start);
+		assertThat(bucket.nanosUntil(1, start)).isCloseTo(TimeUnit.SECONDS.toNanos(1), within(10L));
+		assertThat(bucket.nanosUntil(1, start + TimeUnit.MILLISECONDS.toNanos(1001))).isZero();
+
+		bucket.drain(start + TimeUnit.SECONDS.toNanos(2));
+		assertThat(bucket.nanosUntil(30, start + TimeUnit.SECONDS.toNanos(31))).isGreaterThan(0);
+		assertThat(bucket.nanosUntil(30, start + TimeUnit.MILLISECONDS.toNanos(32_001))).isZero();
+
+		// Refill stops at one minute's worth; larger requests only wait for a full bucket
+		bucket.consume(60, start + TimeUnit.MINUTES.toNanos(10));
+		assertThat(bucket.nanosUntil(1, start + TimeUnit.MINUTES.toNanos(10))).isGreaterThan(0);
+		assertThat(bucket.nanosUntil(500, start + TimeUnit.MINUTES.toNanos(12))).isZero();
+	}
+
+	@Test
+	void servesHigherPriorityFirstWhileWorkersAreBusy() throws Exception {
+		start(200, 1);
+		CompletableFuture<String> blocker = governor.submit("busy", GeminiRateGovernor.Priority.NORMAL, "busy",
+				TOKENS, this::blockingAnalyze);
+		awaitAnalyzed(1);
+
+		CompletableFuture<String> normal = submit("normal", GeminiRateGovernor.Priority.NORMAL);
+		CompletableFuture<String> risk = submit("risk", GeminiRateGovernor.Priority.RISK);
+		CompletableFuture<String> critical = submit("critical", GeminiRateGovernor.Priority.CRITICAL);
+		assertThat(governor.getStats()).containsEntry("queued", 3).containsEntry("in_flight", 1);
+
+		release.countDown();
+		CompletableFuture.allOf(blocker, normal, risk, critical).get(5, TimeUnit.SECONDS);
+		assertThat(analyzed).containsExactly("busy", "critical", "risk", "normal");
+	}
+
+	@Test
+	void coalescesQueuedTextPerCall() throws Exception {
+		start(200, 1);
+		governor.submit("busy", GeminiRateGovernor.Priority.NORMAL, "busy", TOKENS, this::blockingAnalyze);
+		awaitAnalyzed(1);
+
+		CompletableFuture<String> first = governor.submit("call", GeminiRateGovernor.Priority.NORMAL, "hello ",
+				TOKENS, this::analyze);
+		CompletableFuture<String> second = governor.submit("call", GeminiRateGovernor.Priority.RISK, "world",
+				TOKENS, this::analyze);
+
+		assertThat(first.get(1, TimeUnit.SECONDS)).isNull();
+		release.countDown();
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("hello world");
+		assertThat(governor.getStats()).containsEntry("coalesced", 1L);
+	}
+
+	@Test
+	void shedsLowerPriorityWhenQueueIsFull() throws Exception {
+		start(1, 1);
+		governor.submit("busy", GeminiRateGovernor.Priority.NORMAL, "busy", TOKENS, this::blockingAnalyze);
+		awaitAnalyzed(1);
+
+		CompletableFuture<String> normal = submit("normal", GeminiRateGovernor.Priority.NORMAL);
+		CompletableFuture<String> critical = submit("critical", GeminiRateGovernor.Priority.CRITICAL);
+		CompletableFuture<String> late = submit("late", GeminiRateGovernor.Priority.NORMAL);
+
+		assertThat(normal.get(1, TimeUnit.SECONDS)).isNull();
+		assertThat(late.get(1, TimeUnit.SECONDS)).isNull();
+		release.countDown();
+		assertThat(critical.get(5, TimeUnit.SECONDS)).isEqualTo("critical");
+		assertThat(governor.getStats()).containsEntry("shed", 2L);
+	}
+
+	@Test
+	void cancelDropsQueuedRequestOfEndedCall() throws Exception {
+		start(200, 1);
+		governor.submit("busy", GeminiRateGovernor.Priority.NORMAL, "busy", TOKENS, this::blockingAnalyze);
+		awaitAnalyzed(1);
+
+		CompletableFuture<String> ended = submit("ended", GeminiRateGovernor.Priority.CRITICAL);
+		governor.cancel("ended");
+
+		assertThat(ended.get(1, TimeUnit.SECONDS)).isNull();
+		release.countDown();
+		Thread.sleep(200);
+		assertThat(analyzed).containsExactly("busy");
+	}
+
+	private void start(int maxQueueSize, int maxConcurrent) {
+		ReflectionTestUtils.setField(governor, "requestsPerMinute", 600);
+		ReflectionTestUtils.setField(governor, "tokensPerMinute", 1_000_000L);
+		ReflectionTestUtils.setField(governor, "maxQueueSize", maxQueueSize);
+		ReflectionTestUtils.setField(governor, "normalMaxWaitMs", 60_000L);
+		ReflectionTestUtils.setField(governor, "maxConcurrent", maxConcurrent);
+		governor.init();
+	}
+
+	private CompletableFuture<String> submit(String callId, GeminiRateGovernor.Priority priority) {
+		return governor.submit(callId, priority, callId, TOKENS, this::analyze);
+	}
+
+	private String analyze(String text) {
+		analyzed.add(text);
+		return text;
+	}
+
+	private String blockingAnalyze(String text) {
+		analyzed.add(text);
+		try {
+			release.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		return text;
+	}
+
+	private void awaitAnalyzed(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (analyzed.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(analyzed).hasSize(count);
+	}
+}
@@ -0,0 +1,122 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+import com.voicestreamai.sst.config.CallScriptConfiguration;
+
+/** Points gemini.api.url at a local stub that fails, stalls or rejects on demand */
+class GeminiServiceTests {
+
+	private static final String TONE = "{\"agent_tone\":\"PROFESSIONAL\",\"context_quality\":\"GOOD\"}";
+
+	private final GeminiService service = new GeminiService();
+
+	private final GeminiRateGovernor rateGovernor = mock(GeminiRateGovernor.class);
+
+	private HttpServer stub;
+
+	private volatile int status = 200;
+
+	private volatile long delayMs;
+
+	GeminiServiceTests() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/", exchange -> {
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			byte[] body = (status == 200 ? candidates(TONE) : "{\"error\":{}}").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			if (status == 429) {
+				exchange.getResponseHeaders().add("Retry-After", "7");
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		stub.start();
+
+		ReflectionTestUtils.setField(service, "apiKey", "test-key");
+		ReflectionTestUtils.setField(service, "apiUrl", "http://127.0.0.1:" + stub.getAddress().getPort() + "/gemini");
+		ReflectionTestUtils.setField(service, "timeoutMs", 300L);
+		ReflectionTestUtils.setField(service, "breakerWindowSize", 10);
+		ReflectionTestUtils.setField(service, "breakerMinimumCalls", 3);
+		ReflectionTestUtils.setField(service, "breakerFailureRateThreshold", 0.5);
+		ReflectionTestUtils.setField(service, "breakerSlowCallMs", 5_000L);
+		ReflectionTestUtils.setField(service, "breakerOpenMs", 60_000L);
+		ReflectionTestUtils.setField(service, "hedgeEnabled", false);
+		ReflectionTestUtils.setField(service, "hedgeMinDelayMs", 1_500L);
+		ReflectionTestUtils.setField(service, "callScriptConfig", new CallScriptConfiguration().callScriptConfig());
+		ReflectionTestUtils.setField(service, "rateGovernor", rateGovernor);
+		service.init();
+	}
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+		stub.stop(0);
+	}
+
+	@Test
+	void returnsToneJudgementFromHealthyEndpoint() {
+		assertThat(new JSONObject(service.analyzeText("hello")).getString("agent_tone")).isEqualTo("PROFESSIONAL");
+		assertThat(service.isAvailable()).isTrue();
+	}
+
+	@Test
+	void serverErrorsOpenTheCircuit() {
+		status = 500;
+		for (int i = 0; i < 3; i++) {
+			assertThat(new JSONObject(service.analyzeText("hello")).has("error")).isTrue();
+		}
+
+		assertThat(service.isAvailable()).isFalse();
+		assertThat(new JSONObject(service.analyzeText("hello")).getString("error"))
+				.isEqualTo("AI analysis unavailable");
+	}
+
+	@Test
+	void slowResponseTimesOutWithErrorPayload() {
+		delayMs = 1_000;
+
+		JSONObject result = new JSONObject(service.analyzeText("hello"));
+
+		assertThat(result.has("error")).isTrue();
+		assertThat(result.has("agent_tone")).isFalse();
+	}
+
+	@Test
+	void quotaRejectionBacksOffWithoutOpeningTheCircuit() {
+		status = 429;
+		for (int i = 0; i < 5; i++) {
+			assertThat(new JSONObject(service.analyzeText("hello")).getString("error")).isEqualTo("AI quota exceeded");
+		}
+
+		verify(rateGovernor, times(5)).onQuotaExceeded(7_000L);
+		assertThat(service.isAvailable()).isTrue();
+	}
+
+	private static String candidates(String text) {
+		JSONObject part = new JSONObject().put("text", text);
+		JSONObject content = new JSONObject().put("parts", new JSONArray().put(part));
+		return new JSONObject().put("candidates", new JSONArray().put(new JSONObject().put("content", content)))
+				.toString();
+	}
+}
@@ -0,0 +1,126 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.voicestreamai.sst.config.CallScriptConfiguration;
+
+class LocalComplianceScorerTests {
+
+	private static final String EMPATHY_STEP = "Use at least one empathy statement";
+
+	private final LocalComplianceScorer scorer = new LocalComplianceScorer();
+
+	private final LocalComplianceScorer.CallScore score;
+
+	LocalComplianceScorerTests() {
+		ReflectionTestUtils.setField(scorer, "callScriptConfig", new CallScriptConfiguration().callScriptConfig());
+		ReflectionTestUtils.setField(scorer, "fuzzyMinConfidence", 0.8);
+		ReflectionTestUtils.setField(scorer, "fuzzyMaxCandidates", 32);
+		scorer.init();
+		score = scorer.newCall();
+	}
+
+	@Test
+	void greetingScoresTwentyPoints() {
+		JSONObject result = ingest("Welcome to Zepto, how may I assist you today?");
+
+		assertThat(result.getInt("score")).isEqualTo(LocalComplianceScorer.GREETING_POINTS);
+		assertThat(result.getBoolean("greeting_detected")).isTrue();
+		assertThat(result.getString("status")).isEqualTo("IN_PROGRESS");
+		assertThat(result.getString("severity")).isEqualTo("ALERT");
+	}
+
+	@Test
+	void eachStepScoresSevenPoints() {
+		ingest("Welcome to Zepto, how may I assist you today?");
+		JSONObject result = ingest("May I know your name please?");
+
+		assertThat(result.getJSONArray("completed_steps").toList()).containsExactly("Verify customer name");
+		assertThat(result.getInt("score"))
+				.isEqualTo(LocalComplianceScorer.GREETING_POINTS + LocalComplianceScorer.STEP_POINTS);
+	}
+
+	@Test
+	void empathyCompletesItsStepAndScoresEmpathyPoints() {
+		JSONObject before = ingest("Welcome to Zepto, how may I assist you today?");
+		assertThat(before.getJSONArray("missing_steps").toList()).contains(EMPATHY_STEP);
+
+		JSONObject result = ingest("I apologize for the delay.");
+
+		assertThat(result.getInt("empathy_count")).isEqualTo(1);
+		assertThat(result.getJSONArray("completed_steps").toList()).containsExactly(EMPATHY_STEP);
+		assertThat(result.getInt("score")).isEqualTo(LocalComplianceScorer.GREETING_POINTS
+				+ LocalComplianceScorer.STEP_POINTS + LocalComplianceScorer.EMPATHY_POINTS);
+	}
+
+	@Test
+	void fullScriptPassesWithFullScore() {
+		scriptedCall();
+		scorer.applyToneAssessment(score, "{\"agent_tone\":\"PROFESSIONAL\",\"context_quality\":\"GOOD\"}");
+		JSONObject result = ingest("Is there anything else I can assist you with?");
+
+		assertThat(result.getJSONArray("missing_steps").toList()).isEmpty();
+		assertThat(result.getBoolean("closing_detected")).isTrue();
+		// 20 greeting + 10 engagement + 7 x 7 steps + 10 empathy + 11 closing
+		assertThat(result.getInt("score")).isEqualTo(100);
+		assertThat(result.getString("status")).isEqualTo("PASS");
+		assertThat(result.getString("severity")).isEqualTo("NORMAL");
+	}
+
+	@Test
+	void criticalViolationCostsThirtyPointsAndFailsTheCall() {
+		scriptedCall();
+		scorer.applyToneAssessment(score, "{\"agent_tone\":\"PROFESSIONAL\",\"context_quality\":\"GOOD\"}");
+		ingest("Honestly that is a stupid question.");
+		JSONObject result = ingest("Is there anything else I can assist you with?");
+
+		assertThat(result.getJSONArray("critical_violations").toList()).containsExactly("Rude language: stupid");
+		assertThat(result.getInt("score")).isEqualTo(100 - LocalComplianceScorer.VIOLATION_PENALTY);
+		assertThat(result.getString("status")).isEqualTo("FAIL");
+		assertThat(result.getString("severity")).isEqualTo("CRITICAL");
+	}
+
+	@Test
+	void closingWithMissingStepsFails() {
+		ingest("Welcome to Zepto, how may I assist you today?");
+		JSONObject result = ingest("Thank you for calling. Have a great day!");
+
+		assertThat(result.getInt("score"))
+				.isEqualTo(LocalComplianceScorer.GREETING_POINTS + LocalComplianceScorer.CLOSING_POINTS);
+		assertThat(result.getString("status")).isEqualTo("FAIL");
+	}
+
+	@Test
+	void toneAssessmentIgnoresErrorPayloads() {
+		assertThat(scorer.applyToneAssessment(score, "{\"agent_tone\":\"NEUTRAL\",\"context_quality\":\"GOOD\"}"))
+				.isTrue();
+
+		assertThat(scorer.applyToneAssessment(score, "{\"error\":\"AI analysis failed: timeout\"}")).isFalse();
+		assertThat(scorer.applyToneAssessment(score, "not json")).isFalse();
+
+		JSONObject result = new JSONObject(scorer.toResult(score));
+		assertThat(result.getString("agent_tone")).isEqualTo("NEUTRAL");
+		assertThat(result.getString("tone_source")).isEqualTo("AI");
+		assertThat(result.getInt("score")).isEqualTo(LocalComplianceScorer.ENGAGEMENT_POINTS / 2);
+	}
+
+	private void scriptedCall() {
+		ingest("Welcome to Zepto, how may I assist you today?");
+		ingest("May I know your name please?");
+		ingest("Can you confirm your registered mobile number?");
+		ingest("And your date of birth?");
+		ingest("I am sorry to hear that.");
+		ingest("What seems to be the issue with the order?");
+		ingest("I have processed a refund for the missing items.");
+		ingest("Just to summarize, the refund will reach you in three days.");
+	}
+
+	private JSONObject ingest(String segment) {
+		scorer.ingest(score, segment);
+		return new JSONObject(scorer.toResult(score));
+	}
+}
@@ -0,0 +1,102 @@
+package com.voicestreamai.sst.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.voicestreamai.sst.config.CallScriptConfiguration;
+
+class ScriptComplianceServiceTests {
+
+	private final ScriptComplianceService service = new ScriptComplianceService();
+
+	private final GeminiService geminiService = mock(GeminiService.class);
+
+	private final GeminiRateGovernor rateGovernor = mock(GeminiRateGovernor.class);
+
+	private final List<String> results = new CopyOnWriteArrayList<>();
+
+	ScriptComplianceServiceTests() {
+		LocalComplianceScorer scorer = new LocalComplianceScorer();
+		ReflectionTestUtils.setField(scorer, "callScriptConfig", new CallScriptConfiguration().callScriptConfig());
+		ReflectionTestUtils.setField(scorer, "fuzzyMinConfidence", 0.8);
+		ReflectionTestUtils.setField(scorer, "fuzzyMaxCandidates", 32);
+		scorer.init();
+
+		ReflectionTestUtils.setField(service, "geminiService", geminiService);
+		ReflectionTestUtils.setField(service, "rateGovernor", rateGovernor);
+		ReflectionTestUtils.setField(service, "localScorer", scorer);
+		when(geminiService.isAvailable()).thenReturn(false);
+		// Admit immediately and run the analyzer, as the governor would
+		when(rateGovernor.submit(anyString(), any(), anyString(), any(), any())).thenAnswer(invocation -> {
+			Function<String, String> analyzer = invocation.getArgument(4);
+			return CompletableFuture.completedFuture(analyzer.apply(invocation.getArgument(2)));
+		});
+	}
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	@Test
+	void scoresStartedCall() {
+		service.startCall("call");
+		service.analyzeAsync("call", "Welcome to Zepto, how may I assist you today?", results::add);
+
+		assertThat(results).isNotEmpty();
+	}
+
+	@Test
+	void geminiErrorFallsBackToLocalToneRules() throws Exception {
+		when(geminiService.isAvailable()).thenReturn(true);
+		when(geminiService.analyzeText(anyString())).thenReturn("{\"error\":\"AI quota exceeded\"}");
+
+		service.startCall("call");
+		service.analyzeAsync("call", "Welcome to Zepto, how may I assist you today? Let me check that for you.",
+				results::add);
+
+		assertThat(awaitLastResult().getString("tone_source")).isEqualTo("LOCAL_RULES");
+	}
+
+	@Test
+	void ignoresTranscriptArrivingAfterCallEnded() {
+		service.startCall("call");
+		service.endCall("call");
+		service.analyzeAsync("call", "Welcome to Zepto, how may I assist you today?", results::add);
+
+		assertThat(results).isEmpty();
+		assertThat((Map<?, ?>) ReflectionTestUtils.getField(service, "calls")).isEmpty();
+	}
+
+	/** Gemini results are applied on the service's callback executor */
+	private JSONObject awaitLastResult() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < deadline) {
+			if (!results.isEmpty() && !"NONE".equals(last().getString("tone_source"))) {
+				break;
+			}
+			Thread.sleep(10);
+		}
+		return last();
+	}
+
+	private JSONObject last() {
+		return new JSONObject(results.get(results.size() - 1));
+	}
+}
@@ -0,0 +1,99 @@
+package com.voicestreamai.sst.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+
+class AudioForwarderTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final CountDownLatch writing = new CountDownLatch(1);
+
+	private final List<Byte> sent = new CopyOnWriteArrayList<>();
+
+	private final AtomicReference<BufferedSender> upstream = new AtomicReference<>();
+
+	@AfterEach
+	void shutdown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void stalledUpstreamDropsOldestAudioWithoutBlockingTheAgent() throws Exception {
+		upstream.set(stalledUpstream());
+		AudioForwarder forwarder = new AudioForwarder("VoiceStreamAI test", upstream::get, 3, executor);
+
+		forwarder.offer(new byte[] { 0 });
+		assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+		long start = System.nanoTime();
+		for (byte i = 1; i < 10; i++) {
+			forwarder.offer(new byte[] { i });
+		}
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(elapsedMs).isLessThan(500);
+		// Frame 0 is stuck in the upstream write, 1 to 6 gave way to the newest three
+		assertThat(forwarder.getDroppedBytes()).isEqualTo(6);
+
+		release.countDown();
+		awaitSent(4);
+		assertThat(sent).containsExactly((byte) 0, (byte) 7, (byte) 8, (byte) 9);
+	}
+
+	@Test
+	void holdsAudioUntilTheUpstreamReconnects() throws Exception {
+		release.countDown();
+		AudioForwarder forwarder = new AudioForwarder("VoiceStreamAI test", upstream::get, 16, executor);
+
+		forwarder.offer(new byte[] { 1 });
+		forwarder.offer(new byte[] { 2 });
+		assertThat(sent).isEmpty();
+
+		upstream.set(stalledUpstream());
+		forwarder.resume();
+		awaitSent(2);
+		assertThat(sent).containsExactly((byte) 1, (byte) 2);
+	}
+
+	/** Upstream whose writes hang until {@link #release} */
+	private BufferedSender stalledUpstream() throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("asr");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			writing.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return sent.add(invocation.<BinaryMessage>getArgument(0).getPayload().get(0));
+		}).when(session).sendMessage(any());
+		return new BufferedSender("VoiceStreamAI test", session, 5000, 1024, OverflowStrategy.DROP);
+	}
+
+	private void awaitSent(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (sent.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(sent).hasSize(count);
+	}
+}
@@ -0,0 +1,93 @@
+package com.voicestreamai.sst.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+class SupervisorEndpointTests {
+
+	private final SupervisorEndpoint endpoint = new SupervisorEndpoint();
+
+	private final AgentCall call = new AgentCall("call-1", "default", null, 1024, Runnable::run);
+
+	SupervisorEndpointTests() {
+		ReflectionTestUtils.setField(endpoint, "queueSize", 16);
+		ReflectionTestUtils.setField(endpoint, "sendTimeLimit", 5000);
+		ReflectionTestUtils.setField(endpoint, "bufferSizeLimit", 512 * 1024);
+		ReflectionTestUtils.setField(endpoint, "fanoutBacklog", 100);
+		endpoint.init();
+	}
+
+	@AfterEach
+	void shutdown() {
+		endpoint.shutdown();
+	}
+
+	@Test
+	void resultArrivingAfterCallEndedIsNotPublished() throws Exception {
+		List<String> live = new CopyOnWriteArrayList<>();
+		endpoint.afterConnectionEstablished(dashboard("live", live));
+
+		endpoint.publishCompliance(call, new JSONObject().put("severity", "RISK"));
+		awaitFanOut();
+		call.markClosed();
+		endpoint.publishCallEnded(call);
+		// A Gemini request that was already running when the call ended
+		endpoint.publishCompliance(call, new JSONObject().put("severity", "CRITICAL"));
+		endpoint.publishTranscript(call, "late words");
+		awaitFanOut();
+
+		awaitSent(live, 2);
+		Thread.sleep(100);
+		assertThat(live).extracting(payload -> new JSONObject(payload).getString("type"))
+				.containsExactly(SupervisorEvent.COMPLIANCE, SupervisorEvent.CALL_ENDED);
+		assertThat((Map<?, ?>) ReflectionTestUtils.getField(endpoint, "latestCompliance")).isEmpty();
+
+		// A dashboard opened later must not see the ended call as live
+		List<String> late = new CopyOnWriteArrayList<>();
+		endpoint.afterConnectionEstablished(dashboard("late", late));
+		awaitFanOut();
+		Thread.sleep(100);
+		assertThat(late).isEmpty();
+	}
+
+	private static WebSocketSession dashboard(String id, List<String> sent) throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		when(session.isOpen()).thenReturn(true);
+		when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/supervisor"));
+		doAnswer(invocation -> sent.add(invocation.<TextMessage>getArgument(0).getPayload())).when(session)
+				.sendMessage(any());
+		return session;
+	}
+
+	/** The fan-out executor is single-threaded, so a no-op task runs after everything published before it */
+	private void awaitFanOut() throws Exception {
+		((ThreadPoolExecutor) ReflectionTestUtils.getField(endpoint, "fanout")).submit(() -> {
+		}).get(5, TimeUnit.SECONDS);
+	}
+
+	private static void awaitSent(List<String> sent, int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (sent.size() < count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(sent).hasSizeGreaterThanOrEqualTo(count);
+	}
+}
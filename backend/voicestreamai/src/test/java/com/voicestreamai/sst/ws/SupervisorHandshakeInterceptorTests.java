@@ -0,0 +1,63 @@
+package com.voicestreamai.sst.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SupervisorHandshakeInterceptorTests {
+
+	private final SupervisorHandshakeInterceptor interceptor = new SupervisorHandshakeInterceptor();
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@Test
+	void acceptsTokenFromQueryOrBearerHeader() {
+		ReflectionTestUtils.setField(interceptor, "token", "s3cret");
+
+		MockHttpServletRequest query = request();
+		query.setQueryString("campaign=retail&token=s3cret");
+		assertThat(handshake(query)).isTrue();
+
+		MockHttpServletRequest header = request();
+		header.addHeader("Authorization", "Bearer s3cret");
+		assertThat(handshake(header)).isTrue();
+	}
+
+	@Test
+	void refusesMissingOrWrongToken() {
+		ReflectionTestUtils.setField(interceptor, "token", "s3cret");
+
+		assertThat(handshake(request())).isFalse();
+		assertThat(response.getStatus()).isEqualTo(HttpStatus.UNAUTHORIZED.value());
+
+		MockHttpServletRequest wrong = request();
+		wrong.setQueryString("token=guess");
+		assertThat(handshake(wrong)).isFalse();
+	}
+
+	@Test
+	void refusesEveryoneWhenNoTokenIsConfigured() {
+		ReflectionTestUtils.setField(interceptor, "token", "");
+
+		MockHttpServletRequest empty = request();
+		empty.setQueryString("token=");
+		assertThat(handshake(empty)).isFalse();
+	}
+
+	private static MockHttpServletRequest request() {
+		return new MockHttpServletRequest("GET", "/ws/supervisor");
+	}
+
+	private boolean handshake(MockHttpServletRequest request) {
+		return interceptor.beforeHandshake(new ServletServerHttpRequest(request),
+				new ServletServerHttpResponse(response), null, new HashMap<>());
+	}
+}
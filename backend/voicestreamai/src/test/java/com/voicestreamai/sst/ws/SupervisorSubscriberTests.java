@@ -0,0 +1,98 @@
+package com.voicestreamai.sst.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+
+class SupervisorSubscriberTests {
+
+	private final List<String> sent = new ArrayList<>();
+
+	private final WebSocketSession session = mock(WebSocketSession.class);
+
+	SupervisorSubscriberTests() throws Exception {
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> sent.add(invocation.<TextMessage>getArgument(0).getPayload())).when(session)
+				.sendMessage(any());
+	}
+
+	@Test
+	void filtersByCampaignAndSeverity() {
+		SupervisorSubscriber subscriber = subscriber(Set.of("retail"), "RISK", 10);
+
+		assertThat(subscriber.accepts(event("compliance", "c1", "retail", "CRITICAL"))).isTrue();
+		assertThat(subscriber.accepts(event("compliance", "c1", "retail", "ALERT"))).isFalse();
+		assertThat(subscriber.accepts(event("compliance", "c2", "billing", "CRITICAL"))).isFalse();
+		assertThat(subscriber.accepts(event("call_ended", "c1", "retail", "NORMAL"))).isTrue();
+	}
+
+	@Test
+	void dropsOldestWhenFullAndReportsCount() {
+		SupervisorSubscriber subscriber = subscriber(Set.of(), "NORMAL", 2);
+
+		assertThat(subscriber.offer(event("transcript", "c1", "default", "NORMAL", "one"))).isTrue();
+		assertThat(subscriber.offer(event("transcript", "c1", "default", "NORMAL", "two"))).isFalse();
+		assertThat(subscriber.offer(event("transcript", "c1", "default", "NORMAL", "three"))).isFalse();
+		subscriber.drain();
+
+		assertThat(sent).hasSize(3);
+		assertThat(new JSONObject(sent.get(0)).toMap()).containsEntry("type", "dropped").containsEntry("count", 1);
+		assertThat(sent.subList(1, 3)).containsExactly("two", "three");
+	}
+
+	@Test
+	void conflatesComplianceResultsPerCall() {
+		SupervisorSubscriber subscriber = subscriber(Set.of(), "NORMAL", 10);
+
+		subscriber.offer(event("compliance", "c1", "default", "NORMAL", "c1-old"));
+		subscriber.offer(event("compliance", "c2", "default", "NORMAL", "c2"));
+		subscriber.offer(event("transcript", "c1", "default", "NORMAL", "c1-text"));
+		subscriber.offer(event("compliance", "c1", "default", "RISK", "c1-new"));
+		subscriber.drain();
+
+		assertThat(sent).containsExactly("c2", "c1-text", "c1-new");
+	}
+
+	@Test
+	void failedSendClosesDashboardAndStopsQueueing() throws Exception {
+		SupervisorSubscriber subscriber = subscriber(Set.of(), "NORMAL", 10);
+		doThrow(new IOException("write timed out")).when(session).sendMessage(any());
+
+		subscriber.offer(event("transcript", "c1", "default", "NORMAL", "one"));
+		subscriber.offer(event("transcript", "c1", "default", "NORMAL", "two"));
+		subscriber.drain();
+
+		verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+		assertThat(subscriber.offer(event("transcript", "c1", "default", "NORMAL", "three"))).isFalse();
+	}
+
+	private SupervisorSubscriber subscriber(Set<String> campaigns, String minSeverity, int queueLimit) {
+		BufferedSender sender = new BufferedSender("Supervisor", session, 5000, 512 * 1024, OverflowStrategy.DROP);
+		return new SupervisorSubscriber(sender, campaigns, minSeverity, queueLimit);
+	}
+
+	private static SupervisorEvent event(String type, String callId, String campaign, String severity) {
+		return event(type, callId, campaign, severity, type);
+	}
+
+	private static SupervisorEvent event(String type, String callId, String campaign, String severity,
+			String payload) {
+		return new SupervisorEvent(type, callId, campaign, severity, new TextMessage(payload));
+	}
+}
@@ -0,0 +1,74 @@
+package com.voicestreamai.sst.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TranscriptAssemblerTests {
+
+	private final TranscriptAssembler assembler = new TranscriptAssembler();
+
+	@Test
+	void commitsOnlyWordsConsecutiveHypothesesAgreeOn() {
+		TranscriptAssembler.Update first = assembler.accept("{\"partial\":\"I will\"}");
+		TranscriptAssembler.Update second = assembler.accept("{\"partial\":\"I will call my\"}");
+		TranscriptAssembler.Update third = assembler.accept("{\"partial\":\"I will call my lawyer\"}");
+		TranscriptAssembler.Update last = assembler.accept("{\"text\":\"I will call my lawyer.\"}");
+
+		assertThat(first.isFinal()).isFalse();
+		assertThat(first.text()).isEqualTo("I will");
+		assertThat(first.stableText()).isEmpty();
+		assertThat(second.stableText()).isEqualTo("I will");
+		assertThat(third.stableText()).isEqualTo("call my");
+		assertThat(last.isFinal()).isTrue();
+		assertThat(last.text()).isEqualTo("I will call my lawyer.");
+		assertThat(last.stableText()).isEqualTo("lawyer.");
+	}
+
+	@Test
+	void revisedFinalStillCommitsWordsAfterTheCommittedOnes() {
+		assembler.accept("{\"partial\":\"I will call the\"}");
+		assertThat(assembler.accept("{\"partial\":\"I will call the\"}").stableText()).isEqualTo("I will call the");
+
+		TranscriptAssembler.Update last = assembler.accept("{\"text\":\"I'll call the police\"}");
+
+		assertThat(last.text()).isEqualTo("I'll call the police");
+		assertThat(last.stableText()).isEqualTo("police");
+	}
+
+	@Test
+	void revisedHypothesisStillCommitsNewWords() {
+		assembler.accept("{\"partial\":\"I will call my\"}");
+		assembler.accept("{\"partial\":\"I will call my\"}");
+		assembler.accept("{\"partial\":\"I'll call my lawyer\"}");
+
+		assertThat(assembler.accept("{\"partial\":\"I'll call my lawyer now\"}").stableText())
+				.isEqualTo("lawyer");
+	}
+
+	@Test
+	void dropsFinalSegmentOverlapWithCommittedText() {
+		assertThat(assembler.accept("{\"text\":\"welcome to zepto how may I\"}").stableText())
+				.isEqualTo("welcome to zepto how may I");
+		assertThat(assembler.accept("{\"text\":\"How may I assist you today?\"}").stableText())
+				.isEqualTo("assist you today?");
+		assertThat(assembler.accept("{\"text\":\"assist you today\"}").stableText()).isEmpty();
+	}
+
+	@Test
+	void keepsGenuineSingleWordRepeats() {
+		assertThat(assembler.accept("{\"text\":\"yes\"}").stableText()).isEqualTo("yes");
+		assertThat(assembler.accept("{\"text\":\"yes\"}").stableText()).isEqualTo("yes");
+	}
+
+	@Test
+	void understandsFinalFlagsAndPlainText() {
+		assertThat(assembler.accept("{\"text\":\"hello there\",\"is_final\":false}").isFinal()).isFalse();
+		assertThat(assembler.accept("{\"text\":\"hello there\",\"type\":\"interim\"}").stableText())
+				.isEqualTo("hello there");
+		assertThat(assembler.accept("{\"text\":\"hello there friend\",\"final\":true}").stableText())
+				.isEqualTo("friend");
+		assertThat(assembler.accept("plain text segment").stableText()).isEqualTo("plain text segment");
+		assertThat(assembler.accept("{\"text\":\"\"}")).isNull();
+	}
+}